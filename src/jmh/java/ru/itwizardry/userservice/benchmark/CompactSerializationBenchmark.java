@@ -0,0 +1,60 @@
+package ru.itwizardry.userservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import ru.itwizardry.userservice.dto.UserView;
+import ru.itwizardry.userservice.dto.UserViewPage;
+
+import java.util.concurrent.TimeUnit;
+
+// Компактный ответ GET /api/users: application/vnd.users.compact+json против application/cbor
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompactSerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int size;
+
+    private ObjectMapper jsonMapper;
+    private ObjectMapper cborMapper;
+    private UserViewPage page;
+    private byte[] json;
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() throws Exception {
+        jsonMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        cborMapper = new CBORMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        page = new UserViewPage(UserFixtures.dtos(size).stream().map(UserView::of).toList(), "100");
+        json = jsonMapper.writeValueAsBytes(page);
+        cbor = cborMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] writeJson() throws Exception {
+        return jsonMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] writeCbor() throws Exception {
+        return cborMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public UserViewPage readJson() throws Exception {
+        return jsonMapper.readValue(json, UserViewPage.class);
+    }
+
+    @Benchmark
+    public UserViewPage readCbor() throws Exception {
+        return cborMapper.readValue(cbor, UserViewPage.class);
+    }
+}
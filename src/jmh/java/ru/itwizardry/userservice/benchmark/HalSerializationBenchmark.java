@@ -0,0 +1,57 @@
+package ru.itwizardry.userservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+import ru.itwizardry.userservice.dto.UserDto;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HalSerializationBenchmark {
+
+    private static final String BASE = "http://localhost:8080/api/users";
+
+    @Param({"1", "100", "10000"})
+    int size;
+
+    private ObjectMapper halMapper;
+    private CollectionModel<EntityModel<UserDto>> model;
+
+    @Setup
+    public void setUp() {
+        // та же конфигурация, что Spring HATEOAS собирает для application/hal+json
+        halMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .registerModule(new Jackson2HalModule());
+        halMapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+                new DefaultLinkRelationProvider(), CurieProvider.NONE, MessageResolver.DEFAULTS_ONLY));
+
+        List<EntityModel<UserDto>> content = UserFixtures.dtos(size).stream()
+                .map(user -> EntityModel.of(
+                        user,
+                        Link.of(BASE + "/" + user.id()).withSelfRel(),
+                        Link.of(BASE).withRel("users"),
+                        Link.of(BASE + "/" + user.id()).withRel("update"),
+                        Link.of(BASE + "/" + user.id()).withRel("delete")))
+                .toList();
+        model = CollectionModel.of(content, Link.of(BASE).withSelfRel());
+    }
+
+    @Benchmark
+    public byte[] writeCollectionModel() throws Exception {
+        return halMapper.writeValueAsBytes(model);
+    }
+}
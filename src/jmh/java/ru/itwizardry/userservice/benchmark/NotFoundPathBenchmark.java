@@ -0,0 +1,71 @@
+package ru.itwizardry.userservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import ru.itwizardry.userservice.api.error.ApiError;
+import ru.itwizardry.userservice.api.error.ApiErrorWriter;
+import ru.itwizardry.userservice.exception.UserNotFoundException;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Путь 404 от throw в глубине стека до готового тела ответа.
+// depth — сколько кадров до контроллера (прокси Spring, транзакции, Hibernate дают порядка 100-150).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NotFoundPathBenchmark {
+
+    @Param({"20", "150"})
+    int depth;
+
+    private ObjectMapper objectMapper;
+    private long id;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    // как было: исключение со стеком, ApiError с OffsetDateTime.now() через ObjectMapper
+    @Benchmark
+    public byte[] stackTraceAndObjectMapper() throws Exception {
+        try {
+            return lookup(depth, true);
+        } catch (RuntimeException ex) {
+            ApiError body = new ApiError(OffsetDateTime.now(), 404, "User Not Found", ex.getMessage(),
+                    "USER_NOT_FOUND", "/api/users/" + id);
+            return objectMapper.writeValueAsBytes(body);
+        }
+    }
+
+    // как стало: исключение без стека, тело через ApiErrorWriter
+    @Benchmark
+    public byte[] stacklessAndWriter() {
+        try {
+            return lookup(depth, false);
+        } catch (UserNotFoundException ex) {
+            return ApiErrorWriter.toJson(HttpStatus.NOT_FOUND, "User Not Found", ex.getMessage(),
+                    "USER_NOT_FOUND", "/api/users/" + id);
+        }
+    }
+
+    private byte[] lookup(int remaining, boolean withStackTrace) {
+        if (remaining > 0) {
+            return lookup(remaining - 1, withStackTrace);
+        }
+        id++;
+        throw withStackTrace ? new TracedNotFoundException(id) : new UserNotFoundException(id);
+    }
+
+    private static final class TracedNotFoundException extends RuntimeException {
+        TracedNotFoundException(long id) {
+            super("User with id " + id + " not found");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.itwizardry.userservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.compress.Compression;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.MemoryRecordsBuilder;
+import org.apache.kafka.common.record.TimestampType;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.MessageHeaders;
+import ru.itwizardry.userservice.kafka.codec.EventFormat;
+import ru.itwizardry.userservice.kafka.codec.UserEventCodec;
+import ru.itwizardry.userservice.kafka.dto.UserEventDto;
+import ru.itwizardry.userservice.kafka.dto.UserOperation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Сборка батча продюсера без брокера: MemoryRecordsBuilder — то, что RecordAccumulator делает с каждой
+// пачкой при app.kafka.producer.batch-size/compression. records/s — потолок одного потока продюсера
+// по CPU, bytes/records — сколько уходит в сеть на событие. Сравнивать с пиком batch-эндпоинта
+// (chunk-size 500 событий за транзакцию).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UserEventBatchBenchmark {
+
+    private static final int EVENTS = 10_000;
+
+    @Param({"none", "lz4", "zstd"})
+    String compression;
+
+    @Param({"16384", "65536"})
+    int batchSize;
+
+    @Param({"JSON", "CBOR"})
+    EventFormat format;
+
+    private Compression codec;
+    private ByteBuffer buffer;
+    private byte[][] keys;
+    private byte[][] values;
+    private Header[] headers;
+    private int next;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Sent {
+        public long records;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            records = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        codec = Compression.of(CompressionType.forName(compression)).build();
+        buffer = ByteBuffer.allocate(batchSize);
+
+        UserEventCodec eventCodec = new UserEventCodec(new ObjectMapper(), format, Map.of());
+        keys = new byte[EVENTS][];
+        values = new byte[EVENTS][];
+        for (int i = 0; i < EVENTS; i++) {
+            long id = 1_000_000L + i;
+            UserEventDto event = (i % 3 == 0)
+                    ? new UserEventDto(UserOperation.CREATED, "user" + id + "@example.com", id)
+                    : new UserEventDto(UserOperation.UPDATED, "user" + id + "@example.com", id,
+                    Map.of("name", "User " + id, "age", 20 + i % 50));
+            keys[i] = Long.toString(id).getBytes(StandardCharsets.UTF_8);
+            values[i] = eventCodec.encode(event, format);
+        }
+        headers = new Header[]{new RecordHeader(MessageHeaders.CONTENT_TYPE,
+                format.contentType().getBytes(StandardCharsets.UTF_8))};
+    }
+
+    // одна операция — один заполненный батч, как при непрерывном потоке событий
+    @Benchmark
+    public MemoryRecords fillBatch(Sent sent) {
+        buffer.clear();
+        MemoryRecordsBuilder builder = MemoryRecords.builder(buffer, codec, TimestampType.CREATE_TIME, 0L);
+        long now = System.currentTimeMillis();
+        int i = next;
+        do {
+            builder.append(now, keys[i], values[i], headers);
+            sent.records++;
+            i = (i + 1) % EVENTS;
+        } while (builder.hasRoomFor(now, keys[i], values[i], headers));
+        next = i;
+
+        MemoryRecords records = builder.build();
+        sent.bytes += records.sizeInBytes();
+        return records;
+    }
+}
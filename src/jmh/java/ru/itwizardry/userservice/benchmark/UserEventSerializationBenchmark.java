@@ -0,0 +1,67 @@
+package ru.itwizardry.userservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.itwizardry.userservice.kafka.codec.EventFormat;
+import ru.itwizardry.userservice.kafka.codec.UserEventCodec;
+import ru.itwizardry.userservice.kafka.dto.UserEventDto;
+import ru.itwizardry.userservice.kafka.dto.UserOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserEventSerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int size;
+
+    @Param({"JSON", "CBOR"})
+    EventFormat format;
+
+    private ObjectMapper objectMapper;
+    private UserEventCodec codec;
+    private List<UserEventDto> events;
+    private List<byte[]> encoded;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        codec = new UserEventCodec(objectMapper, format, Map.of());
+        events = new ArrayList<>(size);
+        encoded = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            UserEventDto event = new UserEventDto(UserOperation.CREATED, "user" + i + "@test.com", (long) i);
+            events.add(event);
+            encoded.add(codec.encode(event, format));
+        }
+    }
+
+    // прежний путь UserEventPublisher: одно событие — одна строка JSON (от format не зависит)
+    @Benchmark
+    public void writeValueAsString(Blackhole bh) throws Exception {
+        for (UserEventDto event : events) {
+            bh.consume(objectMapper.writeValueAsString(event));
+        }
+    }
+
+    @Benchmark
+    public void encode(Blackhole bh) {
+        for (UserEventDto event : events) {
+            bh.consume(codec.encode(event, format));
+        }
+    }
+
+    // сторона консьюмера
+    @Benchmark
+    public void decode(Blackhole bh) {
+        for (byte[] payload : encoded) {
+            bh.consume(codec.decode(payload, format));
+        }
+    }
+}
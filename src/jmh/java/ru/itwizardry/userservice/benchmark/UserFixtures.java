@@ -0,0 +1,37 @@
+package ru.itwizardry.userservice.benchmark;
+
+import ru.itwizardry.userservice.domain.User;
+import ru.itwizardry.userservice.dto.UserDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+final class UserFixtures {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.parse("2026-01-19T15:48:43.944");
+
+    private UserFixtures() {}
+
+    static List<User> users(int size) {
+        List<User> users = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            users.add(User.builder()
+                    .id(id)
+                    .name("User " + id)
+                    .email("user" + id + "@test.com")
+                    .age(18 + (int) (id % 60))
+                    .createdAt(CREATED_AT)
+                    .build());
+        }
+        return users;
+    }
+
+    static List<UserDto> dtos(int size) {
+        List<UserDto> dtos = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            dtos.add(new UserDto(id, "User " + id, "user" + id + "@test.com", 18 + (int) (id % 60), CREATED_AT, 0));
+        }
+        return dtos;
+    }
+}
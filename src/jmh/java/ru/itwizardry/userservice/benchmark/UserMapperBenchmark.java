@@ -0,0 +1,33 @@
+package ru.itwizardry.userservice.benchmark;
+
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+import ru.itwizardry.userservice.domain.User;
+import ru.itwizardry.userservice.dto.UserDto;
+import ru.itwizardry.userservice.mapper.UserMapper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserMapperBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int size;
+
+    private UserMapper mapper;
+    private List<User> users;
+
+    @Setup
+    public void setUp() {
+        mapper = Mappers.getMapper(UserMapper.class);
+        users = UserFixtures.users(size);
+    }
+
+    @Benchmark
+    public List<UserDto> toDtoList() {
+        return mapper.toDtoList(users);
+    }
+}
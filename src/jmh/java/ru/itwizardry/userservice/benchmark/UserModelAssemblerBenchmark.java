@@ -0,0 +1,48 @@
+package ru.itwizardry.userservice.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.itwizardry.userservice.api.hateoas.UserModelAssembler;
+import ru.itwizardry.userservice.dto.UserDto;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Scope.Thread: linkTo() читает текущий запрос из ThreadLocal RequestContextHolder
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserModelAssemblerBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int size;
+
+    private UserModelAssembler assembler;
+    private List<UserDto> users;
+
+    @Setup
+    public void setUp() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users");
+        request.setServerName("localhost");
+        request.setServerPort(8080);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        assembler = new UserModelAssembler();
+        users = UserFixtures.dtos(size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public void toModel(Blackhole bh) {
+        for (UserDto user : users) {
+            bh.consume(assembler.toModel(user));
+        }
+    }
+}
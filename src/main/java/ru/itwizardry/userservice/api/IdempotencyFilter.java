@@ -0,0 +1,215 @@
+package ru.itwizardry.userservice.api;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import ru.itwizardry.userservice.api.error.ApiErrorWriter;
+import ru.itwizardry.userservice.dto.IdempotentResponse;
+import ru.itwizardry.userservice.service.IdempotencyService;
+import ru.itwizardry.userservice.service.IdempotencyService.Claim;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+
+// Idempotency-Key для POST/PUT: первый запрос выполняется и его ответ сохраняется,
+// повтор с тем же ключом получает сохранённый ответ, не доходя до контроллера.
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyService idempotencyService;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String method = request.getMethod();
+        boolean unsafe = HttpMethod.POST.matches(method) || HttpMethod.PUT.matches(method);
+        return !unsafe || request.getHeader(IDEMPOTENCY_KEY) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY).strip();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            writeError(request, response, HttpStatus.BAD_REQUEST, "Invalid Parameter",
+                    IDEMPOTENCY_KEY + " must be 1.." + MAX_KEY_LENGTH + " characters", "INVALID_PARAMETER");
+            return;
+        }
+
+        // тело читаем заранее: отпечаток нужен до выполнения, а контроллер прочитает копию
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        String requestHash = fingerprint(request, body);
+
+        switch (idempotencyService.claim(key, requestHash)) {
+            case Claim.Completed(IdempotentResponse stored) -> replay(stored, response);
+            case Claim.InProgress() -> writeError(request, response, HttpStatus.CONFLICT, "Request In Progress",
+                    "A request with this " + IDEMPOTENCY_KEY + " is still being processed", "IDEMPOTENCY_KEY_IN_PROGRESS");
+            case Claim.Mismatch() -> writeError(request, response, HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency Key Reused",
+                    IDEMPOTENCY_KEY + " was already used for a different request", "IDEMPOTENCY_KEY_REUSED");
+            case Claim.Acquired() -> execute(key, requestHash, new CachedBodyRequest(request, body), response, chain);
+        }
+    }
+
+    private void execute(String key, String requestHash, HttpServletRequest request, HttpServletResponse response,
+                         FilterChain chain) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            chain.doFilter(request, wrapper);
+        } catch (ServletException | IOException | RuntimeException ex) {
+            idempotencyService.release(key);
+            throw ex;
+        }
+
+        int status = wrapper.getStatus();
+        if (status >= 500) {
+            // 5xx не запоминаем: повтор должен выполниться заново
+            idempotencyService.release(key);
+        } else {
+            idempotencyService.complete(key, new IdempotentResponse(
+                    requestHash,
+                    status,
+                    wrapper.getHeader(HttpHeaders.LOCATION),
+                    wrapper.getContentType(),
+                    wrapper.getHeader(HttpHeaders.ETAG),
+                    vary(wrapper),
+                    wrapper.getContentAsByteArray()
+            ));
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private static void replay(IdempotentResponse stored, HttpServletResponse response) throws IOException {
+        response.setStatus(stored.status());
+        response.setHeader(IDEMPOTENT_REPLAYED, "true");
+        if (stored.location() != null) {
+            response.setHeader(HttpHeaders.LOCATION, stored.location());
+        }
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        if (stored.etag() != null) {
+            response.setHeader(HttpHeaders.ETAG, stored.etag());
+        }
+        if (stored.vary() != null) {
+            response.setHeader(HttpHeaders.VARY, stored.vary());
+        }
+        if (stored.body() != null) {
+            response.setContentLength(stored.body().length);
+            response.getOutputStream().write(stored.body());
+        }
+    }
+
+    // Vary может прийти несколькими заголовками (Accept от согласования, Origin от CORS) — храним одной строкой
+    private static String vary(HttpServletResponse response) {
+        Collection<String> values = response.getHeaders(HttpHeaders.VARY);
+        return values.isEmpty() ? null : String.join(", ", values);
+    }
+
+    private static void writeError(HttpServletRequest request, HttpServletResponse response, HttpStatus status,
+                                   String error, String message, String code) throws IOException {
+        ApiErrorWriter.write(request, response, status, error, message, code);
+    }
+
+    // метод и URI входят в отпечаток: тот же ключ на другом endpoint'е — это ошибка клиента, а не повтор
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((request.getMethod() + ' ' + request.getRequestURI() + '\n').getBytes(StandardCharsets.UTF_8));
+            digest.update(body);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // тело уже в памяти: ждать данных не нужно, слушатель получает всё сразу
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            listener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.itwizardry.userservice.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.itwizardry.userservice.api.error.ApiErrorWriter;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+// Лимит запросов на клиента с двумя бюджетами. Клиент — аутентифицированный пользователь,
+// известный X-Api-Key (из app.rate-limit.api-keys) или адрес: заголовки без проверки ничего не решают,
+// иначе новый ключ в каждом запросе давал бы новое полное ведро.
+// bulk — списки, выгрузка, лента изменений и batch; item — всё остальное (по id, запись).
+// Пока пул соединений перегружен, bulk-запросы сбрасываются с 503, не доходя до базы,
+// чтобы чтения списков не отнимали соединения у записи.
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    public static final String API_KEY = "X-Api-Key";
+
+    public record Budget(double permitsPerSecond, int burst) {}
+
+    // maxTracked — вёдер в памяти, newPerSecond — сколько новых клиентов в секунду получают своё ведро
+    public record Clients(Set<String> apiKeys, long maxTracked, double newPerSecond) {}
+
+    private final TokenBuckets bulk;
+    private final TokenBuckets item;
+    private final Set<String> apiKeys;
+    private final BooleanSupplier overloaded;
+    private final long overloadRetryAfterSeconds;
+    private final Counter bulkAllowed;
+    private final Counter bulkLimited;
+    private final Counter bulkShed;
+    private final Counter itemAllowed;
+    private final Counter itemLimited;
+
+    public RateLimitFilter(Budget bulk, Budget item, Clients clients, BooleanSupplier overloaded,
+                           Duration overloadRetryAfter, MeterRegistry registry) {
+        this.bulk = new TokenBuckets(bulk.permitsPerSecond(), bulk.burst(), clients.maxTracked(), clients.newPerSecond());
+        this.item = new TokenBuckets(item.permitsPerSecond(), item.burst(), clients.maxTracked(), clients.newPerSecond());
+        this.apiKeys = Set.copyOf(clients.apiKeys());
+        this.overloaded = overloaded;
+        this.overloadRetryAfterSeconds = Math.max(1, overloadRetryAfter.toSeconds());
+        this.bulkAllowed = requests(registry, "bulk", "allowed");
+        this.bulkLimited = requests(registry, "bulk", "limited");
+        this.bulkShed = requests(registry, "bulk", "shed");
+        this.itemAllowed = requests(registry, "item", "allowed");
+        this.itemLimited = requests(registry, "item", "limited");
+        clients(registry, "bulk", this.bulk);
+        clients(registry, "item", this.item);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean isBulk = isBulk(request);
+        if (isBulk && overloaded.getAsBoolean()) {
+            bulkShed.increment();
+            reject(request, response, HttpStatus.SERVICE_UNAVAILABLE, overloadRetryAfterSeconds, "Service Overloaded",
+                    "Database is overloaded, retry later", "SERVICE_OVERLOADED");
+            return;
+        }
+
+        long waitNanos = (isBulk ? bulk : item).tryAcquire(clientKey(request), System.nanoTime());
+        if (waitNanos > 0) {
+            (isBulk ? bulkLimited : itemLimited).increment();
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+            reject(request, response, HttpStatus.TOO_MANY_REQUESTS, retryAfter, "Too Many Requests",
+                    "Rate limit exceeded, retry in " + retryAfter + " s", "RATE_LIMITED");
+            return;
+        }
+        (isBulk ? bulkAllowed : itemAllowed).increment();
+        chain.doFilter(request, response);
+    }
+
+    private static void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status,
+                               long retryAfterSeconds, String error, String message, String code) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        ApiErrorWriter.write(request, response, status, error, message, code);
+    }
+
+    private static boolean isBulk(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String method = request.getMethod();
+        if (HttpMethod.POST.matches(method)) {
+            return path.endsWith(":batch");
+        }
+        return (HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method))
+                && (path.equals("/api/users") || path.startsWith("/api/users/stream")
+                || path.startsWith("/api/users/changes") || path.startsWith("/api/users/export"));
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return "user:" + principal.getName();
+        }
+        String apiKey = request.getHeader(API_KEY);
+        if (apiKey != null && apiKeys.contains(apiKey.strip())) {
+            return "key:" + apiKey.strip();
+        }
+        return "addr:" + request.getRemoteAddr();
+    }
+
+    private static Counter requests(MeterRegistry registry, String budget, String result) {
+        return Counter.builder("api.rate.limit.requests")
+                .description("API requests by rate limit budget and outcome")
+                .tag("budget", budget)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static void clients(MeterRegistry registry, String budget, TokenBuckets buckets) {
+        Gauge.builder("api.rate.limit.clients", buckets, TokenBuckets::size)
+                .description("Clients with a tracked token bucket")
+                .tag("budget", budget)
+                .register(registry);
+        FunctionCounter.builder("api.rate.limit.overflow", buckets, TokenBuckets::overflowed)
+                .description("Requests charged to the shared bucket because new clients were arriving too fast")
+                .tag("budget", budget)
+                .register(registry);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.itwizardry.userservice.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+// Read-your-writes: после успешной записи клиент на window читает только с primary,
+// иначе следующий GET может получить со отстающей реплики старую версию.
+// Клиент — X-Client-Id, без него — адрес. Окно живёт в памяти инстанса: без sticky-сессий
+// за балансировщиком клиент закрепляется только на том инстансе, который принял запись.
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String CLIENT_ID = "X-Client-Id";
+    public static final String PRIMARY_ONLY = ReadYourWritesFilter.class.getName() + ".PRIMARY_ONLY";
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(Duration window, long maxClients) {
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    // текущий запрос закреплён за primary; вне HTTP-запроса — нет
+    public static boolean isPinnedToPrimary() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                && attributes.getAttribute(PRIMARY_ONLY, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = clientKey(request);
+        if (recentWriters.getIfPresent(client) != null) {
+            request.setAttribute(PRIMARY_ONLY, Boolean.TRUE);
+        }
+
+        chain.doFilter(request, response);
+
+        if (isWrite(request.getMethod()) && response.getStatus() < 400) {
+            recentWriters.put(client, Boolean.TRUE);
+        }
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        String clientId = request.getHeader(CLIENT_ID);
+        return (clientId == null || clientId.isBlank()) ? request.getRemoteAddr() : clientId.strip();
+    }
+
+    private static boolean isWrite(String method) {
+        return HttpMethod.POST.matches(method)
+                || HttpMethod.PUT.matches(method)
+                || HttpMethod.PATCH.matches(method)
+                || HttpMethod.DELETE.matches(method);
+    }
+}
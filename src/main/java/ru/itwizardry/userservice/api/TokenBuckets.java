@@ -0,0 +1,82 @@
+package ru.itwizardry.userservice.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Token bucket в форме GCRA: на клиента один AtomicLong — «теоретическое время» следующего запроса.
+// Взять токен — одна CAS, без блокировок; хранилище — Caffeine, он сам шардирован.
+// Ведро, к которому не обращались burst / rate, всё равно полное, поэтому его можно выселять без потерь.
+// Новые вёдра заводятся не чаще newPerSecond: иначе поток выдуманных клиентов вытеснил бы из кэша
+// настоящих, а их вёдра вернулись бы полными. Клиенты сверх этого лимита делят одно общее ведро.
+// Простой ведра — не меньше MIN_IDLE: иначе клиент, приходящий раз в несколько секунд, каждый раз
+// заводил бы ведро заново и тратил на это лимит новых; размер всё равно ограничен maxClients.
+final class TokenBuckets {
+
+    static final Duration MIN_IDLE = Duration.ofMinutes(10);
+
+    private final Cache<String, AtomicLong> buckets;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong nextNewBucket = new AtomicLong(Long.MIN_VALUE);
+    private final long newIntervalNanos;
+    private final long newToleranceNanos;
+    private final AtomicLong shared = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder overflowed = new LongAdder();
+
+    TokenBuckets(double permitsPerSecond, int burst, long maxClients, double newPerSecond) {
+        this(permitsPerSecond, burst, maxClients, newPerSecond, Ticker.systemTicker());
+    }
+
+    TokenBuckets(double permitsPerSecond, int burst, long maxClients, double newPerSecond, Ticker ticker) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        // запас новых вёдер — на секунду вперёд
+        this.newIntervalNanos = Math.max(1, (long) (1_000_000_000L / newPerSecond));
+        this.newToleranceNanos = newIntervalNanos * (Math.max(1, (long) newPerSecond) - 1);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(Math.max(intervalNanos + toleranceNanos, MIN_IDLE.toNanos())))
+                .ticker(ticker)
+                .build();
+    }
+
+    // 0 — токен взят; иначе через сколько наносекунд появится следующий
+    long tryAcquire(String client, long now) {
+        AtomicLong next = buckets.getIfPresent(client);
+        if (next == null) {
+            if (take(nextNewBucket, now, newIntervalNanos, newToleranceNanos) > 0) {
+                overflowed.increment();
+                return take(shared, now, intervalNanos, toleranceNanos);
+            }
+            next = buckets.get(client, key -> new AtomicLong(Long.MIN_VALUE));
+        }
+        return take(next, now, intervalNanos, toleranceNanos);
+    }
+
+    long size() {
+        return buckets.estimatedSize();
+    }
+
+    long overflowed() {
+        return overflowed.sum();
+    }
+
+    private static long take(AtomicLong next, long now, long intervalNanos, long toleranceNanos) {
+        while (true) {
+            long current = next.get();
+            long start = Math.max(current, now);
+            long wait = start - now - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (next.compareAndSet(current, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
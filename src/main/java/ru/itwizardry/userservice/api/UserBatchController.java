@@ -0,0 +1,53 @@
+package ru.itwizardry.userservice.api;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.itwizardry.userservice.dto.UserBatchItem;
+import ru.itwizardry.userservice.dto.UserBatchResponse;
+import ru.itwizardry.userservice.service.UserBatchService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+@Tag(name = "Users")
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class UserBatchController {
+
+    private final UserBatchService userBatchService;
+    private final ObjectMapper objectMapper;
+
+    @Operation(
+            summary = "Bulk create/update/delete users",
+            description = "Applies operations in chunks; a failed item (validation, duplicate email, missing user) "
+                    + "does not affect the rest of the batch"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Per-item results"),
+            @ApiResponse(responseCode = "413", description = "More items than app.batch.max-items")
+    })
+    @PostMapping(value = "/users:batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public UserBatchResponse batch(@RequestBody List<UserBatchItem> items) {
+        return userBatchService.process(items);
+    }
+
+    @Operation(summary = "Bulk create/update/delete users (NDJSON)")
+    @PostMapping(value = "/users:batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public UserBatchResponse batchNdjson(InputStream body) throws IOException {
+        try (MappingIterator<UserBatchItem> lines = objectMapper.readerFor(UserBatchItem.class).readValues(body)) {
+            return userBatchService.process(lines);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.itwizardry.userservice.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import ru.itwizardry.userservice.api.error.ApiError;
+import ru.itwizardry.userservice.dto.UserChangeDto;
+import ru.itwizardry.userservice.exception.InvalidQueryParameterException;
+
+@Tag(name = "Users")
+@RestController
+@RequestMapping("/api/users/changes")
+@RequiredArgsConstructor
+public class UserChangeController {
+
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private final UserChangeStreams userChangeStreams;
+
+    // Один обработчик на оба формата: с двумя по produces запрос с Accept: */* неоднозначен
+    @Operation(
+            summary = "User change feed",
+            description = """
+                    Changes with seq greater than `since`, ordered by seq: the current state of each changed user \
+                    or a tombstone for a deleted one. Several changes of one user are collapsed into the latest. \
+                    Store the last seq and pass it as `since` next time; `since=0` returns every user.
+                    NDJSON ends once caught up unless `follow=true`. `Accept: text/event-stream` follows live \
+                    by default; each event id is its seq, so EventSource resumes via Last-Event-ID. \
+                    Idle NDJSON streams send empty lines as keep-alives."""
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "OK",
+                    content = {
+                            @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = UserChangeDto.class)),
+                            @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                                    schema = @Schema(implementation = UserChangeDto.class))
+                    }
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid cursor",
+                    content = @Content(schema = @Schema(implementation = ApiError.class))
+            )
+    })
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<ResponseBodyEmitter> changes(
+            @Parameter(description = "Return changes after this seq", example = "0")
+            @RequestParam(defaultValue = "0") long since,
+            @Parameter(description = "Keep the response open and send new changes as they commit; "
+                    + "default is false for NDJSON and true for SSE")
+            @RequestParam(required = false) Boolean follow,
+            @Parameter(in = ParameterIn.HEADER, name = LAST_EVENT_ID, description = "SSE resume cursor, overrides since")
+            @RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
+        long cursor = (lastEventId != null) ? lastEventId : since;
+        if (cursor < 0) {
+            throw new InvalidQueryParameterException("since", "must be >= 0");
+        }
+        boolean sse = accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype);
+
+        ResponseBodyEmitter emitter = userChangeStreams.open(cursor, sse, (follow != null) ? follow : sse);
+        return ResponseEntity.ok()
+                .contentType(sse ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_NDJSON)
+                .body(emitter);
+    }
+}
@@ -0,0 +1,183 @@
+package ru.itwizardry.userservice.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.itwizardry.userservice.dto.UserChangeDto;
+import ru.itwizardry.userservice.service.UserChangeService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Открытые ответы GET /api/users/changes. Каждый ответ — задача на общем планировщике: догоняет пачками
+// по batch-size, а в режиме follow потом раз в poll-interval проверяет новые изменения. Пока ответ ждёт,
+// поток не занят; медленный клиент держит поток только на время своей записи.
+@Slf4j
+@Component
+public class UserChangeStreams implements DisposableBean {
+
+    private static final byte[] KEEP_ALIVE = {'\n'};
+
+    private final UserChangeService userChangeService;
+    private final ObjectWriter writer;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicInteger open = new AtomicInteger();
+
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final long heartbeatNanos;
+    private final long timeoutMillis;
+
+    public UserChangeStreams(
+            UserChangeService userChangeService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.changes.batch-size:1000}") int batchSize,
+            @Value("${app.changes.poll-interval:PT1S}") Duration pollInterval,
+            @Value("${app.changes.heartbeat:PT15S}") Duration heartbeat,
+            @Value("${app.changes.timeout:PT30M}") Duration timeout,
+            @Value("${app.changes.threads:4}") int threads
+    ) {
+        this.userChangeService = userChangeService;
+        this.writer = objectMapper.writerFor(UserChangeDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.scheduler = Executors.newScheduledThreadPool(threads,
+                Thread.ofPlatform().name("user-changes-", 0).daemon(true).factory());
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollInterval.toMillis();
+        this.heartbeatNanos = heartbeat.toNanos();
+        this.timeoutMillis = timeout.toMillis();
+        Gauge.builder("user.changes.streams", open, AtomicInteger::get)
+                .description("Open change feed responses")
+                .register(meterRegistry);
+    }
+
+    // sse: события с id = seq, чтобы EventSource переподключался с Last-Event-ID; иначе NDJSON.
+    // follow: после догоняния не закрывать ответ, а ждать новых изменений
+    public ResponseBodyEmitter open(long since, boolean sse, boolean follow) {
+        ResponseBodyEmitter emitter = sse ? new SseEmitter(timeoutMillis) : new ResponseBodyEmitter(timeoutMillis);
+        ChangeStream stream = new ChangeStream(emitter, sse, follow, since);
+        emitter.onCompletion(stream::stop);
+        emitter.onTimeout(stream::stop);
+        emitter.onError(e -> stream.stop());
+        open.incrementAndGet();
+        scheduler.execute(stream);
+        return emitter;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private final class ChangeStream implements Runnable {
+
+        private final ResponseBodyEmitter emitter;
+        private final boolean sse;
+        private final boolean follow;
+        private final AtomicBoolean stopped = new AtomicBoolean();
+        private long cursor;
+        private long lastWrite = System.nanoTime();
+
+        private ChangeStream(ResponseBodyEmitter emitter, boolean sse, boolean follow, long since) {
+            this.emitter = emitter;
+            this.sse = sse;
+            this.follow = follow;
+            this.cursor = since;
+        }
+
+        @Override
+        public void run() {
+            if (stopped.get()) {
+                return;
+            }
+            try {
+                List<UserChangeDto> changes = userChangeService.findChanges(cursor, batchSize);
+                if (!changes.isEmpty()) {
+                    write(changes);
+                    cursor = changes.get(changes.size() - 1).seq();
+                } else if (follow && System.nanoTime() - lastWrite > heartbeatNanos) {
+                    // прокси не закрывают соединение по простою, а отключившийся клиент обнаруживается на записи
+                    keepAlive();
+                }
+
+                if (changes.size() == batchSize) {
+                    scheduler.execute(this);
+                } else if (follow) {
+                    scheduler.schedule(this, pollIntervalMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    emitter.complete();
+                }
+            } catch (IOException e) {
+                // клиент отключился: запрос завершит контейнер, onError/onCompletion остановят задачу
+                stop();
+            } catch (RejectedExecutionException e) {
+                emitter.complete();
+            } catch (RuntimeException e) {
+                if (!follow) {
+                    emitter.completeWithError(e);
+                    return;
+                }
+                log.warn("Change feed poll failed, retrying [cursor={}]", cursor, e);
+                try {
+                    scheduler.schedule(this, pollIntervalMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException rejected) {
+                    emitter.complete();
+                }
+            }
+        }
+
+        private void write(List<UserChangeDto> changes) throws IOException {
+            if (sse) {
+                SseEmitter events = (SseEmitter) emitter;
+                for (UserChangeDto change : changes) {
+                    events.send(SseEmitter.event()
+                            .id(Long.toString(change.seq()))
+                            .name("change")
+                            .data(change, MediaType.APPLICATION_JSON));
+                }
+            } else {
+                // пачка уходит одной записью, а не строкой на изменение
+                ByteArrayOutputStream out = new ByteArrayOutputStream(changes.size() * 160);
+                for (UserChangeDto change : changes) {
+                    writer.writeValue(out, change);
+                    out.write('\n');
+                }
+                emitter.send(out.toByteArray(), MediaType.APPLICATION_NDJSON);
+            }
+            lastWrite = System.nanoTime();
+        }
+
+        private void keepAlive() throws IOException {
+            if (sse) {
+                ((SseEmitter) emitter).send(SseEmitter.event().comment("keep-alive"));
+            } else {
+                emitter.send(KEEP_ALIVE, MediaType.APPLICATION_NDJSON);
+            }
+            lastWrite = System.nanoTime();
+        }
+
+        private void stop() {
+            if (stopped.compareAndSet(false, true)) {
+                open.decrementAndGet();
+            }
+        }
+    }
+}
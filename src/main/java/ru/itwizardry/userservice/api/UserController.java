@@ -1,7 +1,11 @@
 package ru.itwizardry.userservice.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -10,22 +14,35 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import ru.itwizardry.userservice.api.error.ApiError;
 import ru.itwizardry.userservice.api.hateoas.UserModelAssembler;
+import ru.itwizardry.userservice.cache.EmailBloomFilter;
 import ru.itwizardry.userservice.dto.UserCreateRequest;
 import ru.itwizardry.userservice.dto.UserDto;
+import ru.itwizardry.userservice.dto.UserField;
+import ru.itwizardry.userservice.dto.UserPage;
+import ru.itwizardry.userservice.dto.UserQuery;
 import ru.itwizardry.userservice.dto.UserUpdateRequest;
+import ru.itwizardry.userservice.dto.UserView;
+import ru.itwizardry.userservice.dto.UserViewPage;
 import ru.itwizardry.userservice.service.UserService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.util.List;
+import java.util.Set;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 import static ru.itwizardry.userservice.api.docs.SwaggerExamples.*;
 
 @Tag(name = "Users")
@@ -34,8 +51,13 @@ import static ru.itwizardry.userservice.api.docs.SwaggerExamples.*;
 @RequiredArgsConstructor
 public class UserController {
 
+    static final int DEFAULT_PAGE_LIMIT = 100;
+    static final int MAX_PAGE_LIMIT = 1000;
+
     private final UserService userService;
     private final UserModelAssembler assembler;
+    private final ObjectMapper objectMapper;
+    private final EmailBloomFilter emailBloomFilter;
 
     @Operation(summary = "Create user")
     @ApiResponses({
@@ -55,8 +77,19 @@ public class UserController {
                             schema = @Schema(implementation = ApiError.class),
                             examples = @ExampleObject(value = ERROR_EMAIL_EXISTS)
                     )
+            ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Idempotency-Key already used for a different request",
+                    content = @Content(schema = @Schema(implementation = ApiError.class))
             )
     })
+    @Parameter(
+            in = ParameterIn.HEADER,
+            name = IdempotencyFilter.IDEMPOTENCY_KEY,
+            description = "Client-generated key; a retry with the same key replays the original response",
+            schema = @Schema(type = "string", maxLength = IdempotencyFilter.MAX_KEY_LENGTH)
+    )
     @PostMapping
     public ResponseEntity<EntityModel<UserDto>> create(@Valid @RequestBody UserCreateRequest request) {
         UserDto created = userService.createUser(request);
@@ -67,12 +100,15 @@ public class UserController {
                 .buildAndExpand(created.id())
                 .toUri();
 
-        return ResponseEntity.created(location).body(assembler.toModel(created));
+        return ResponseEntity.created(location)
+                .eTag(UserETags.of(created))
+                .body(assembler.toModel(created));
     }
 
     @Operation(summary = "Get user by id")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "OK"),
+            @ApiResponse(responseCode = "304", description = "Not Modified (If-None-Match matches the current ETag)"),
             @ApiResponse(
                     responseCode = "404",
                     description = "User not found",
@@ -83,35 +119,175 @@ public class UserController {
             )
     })
     @GetMapping("/{id}")
-    public EntityModel<UserDto> getById(
+    public ResponseEntity<EntityModel<UserDto>> getById(
             @Parameter(description = "User id", example = "1")
-            @PathVariable Long id
+            @PathVariable Long id,
+            WebRequest webRequest
     ) {
         UserDto user = userService.getUserById(id);
-        return assembler.toModel(user);
+        String etag = UserETags.of(user);
+        // 304 без сборки ссылок и сериализации
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(assembler.toModel(user));
     }
 
-    @Operation(summary = "Get users", description = "Returns all users or filters by age")
+    @Operation(
+            summary = "Get user by id (compact)",
+            description = "Plain JSON (or CBOR with `Accept: application/cbor`) without links; "
+                    + "`fields` selects the properties to return. "
+                    + "Chosen by `Accept: " + UserMediaTypes.COMPACT_JSON_VALUE + "` or by the presence of `fields`"
+    )
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "OK")
+            @ApiResponse(responseCode = "200", description = "OK"),
+            @ApiResponse(responseCode = "304", description = "Not Modified (If-None-Match matches the current ETag)"),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "User not found",
+                    content = @Content(
+                            schema = @Schema(implementation = ApiError.class),
+                            examples = @ExampleObject(value = ERROR_USER_NOT_FOUND)
+                    )
+            )
+    })
+    @GetMapping(value = "/{id}", produces = {UserMediaTypes.COMPACT_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<UserView> getCompactById(
+            @Parameter(description = "User id", example = "1")
+            @PathVariable Long id,
+            @Parameter(description = "Comma-separated fields: id, name, email, age, createdAt", example = "id,email")
+            @RequestParam(name = UserMediaTypes.FIELDS_PARAMETER, required = false) String fields,
+            WebRequest webRequest
+    ) {
+        Set<UserField> selected = UserField.parse(fields);
+        // getUserById закэширован: на попадании в кэш до БД не доходим вовсе
+        UserDto user = userService.getUserById(id);
+        String etag = UserETags.of(user, selected);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(UserView.of(user).only(selected));
+    }
+
+    @Operation(
+            summary = "Get users",
+            description = "Filters by age range, name prefix and creation window, sorts by id, age, name or createdAt; "
+                    + "results are paged by an opaque keyset cursor (follow the `next` link)"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "OK"),
+            @ApiResponse(responseCode = "304", description = "Not Modified (If-None-Match matches the current ETag)"),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Unsupported sort or malformed cursor",
+                    content = @Content(schema = @Schema(implementation = ApiError.class))
+            )
     })
     @GetMapping
-    public CollectionModel<EntityModel<UserDto>> getAll(
-            @Parameter(description = "Optional age filter", example = "30")
-            @RequestParam(required = false) Integer age
+    public ResponseEntity<CollectionModel<EntityModel<UserDto>>> getAll(
+            @ParameterObject UserQuery query,
+            @Parameter(description = "Cursor from the previous page's `next` link", example = "100")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Page size (1.." + MAX_PAGE_LIMIT + ")", example = "100")
+            @RequestParam(required = false) Integer limit,
+            WebRequest webRequest
     ) {
-        List<UserDto> users = (age != null)
-                ? userService.findByAge(age)
-                : userService.getAllUsers();
-
-        List<EntityModel<UserDto>> content = users.stream()
-                .map(assembler::toModel)
-                .toList();
-
-        return CollectionModel.of(
-                content,
-                linkTo(methodOn(UserController.class).getAll(age)).withSelfRel()
-        );
+        UserPage page = userService.findUsers(query == null ? UserQuery.all() : query, after, pageLimit(limit));
+        String etag = UserETags.of(page);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(assembler.toPageModel(page));
+    }
+
+    @Operation(
+            summary = "Get users (compact)",
+            description = "Same filters and cursor as the HAL list, but plain JSON (or CBOR) without links "
+                    + "and entity loading; `fields` selects the properties to return"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "OK"),
+            @ApiResponse(responseCode = "304", description = "Not Modified (If-None-Match matches the current ETag)"),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Unsupported sort or field, or malformed cursor",
+                    content = @Content(schema = @Schema(implementation = ApiError.class))
+            )
+    })
+    @GetMapping(produces = {UserMediaTypes.COMPACT_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<UserViewPage> getAllCompact(
+            @ParameterObject UserQuery query,
+            @Parameter(description = "Cursor from the previous page's `nextAfter`", example = "100")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Page size (1.." + MAX_PAGE_LIMIT + ")", example = "100")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Comma-separated fields: id, name, email, age, createdAt", example = "id,email")
+            @RequestParam(name = UserMediaTypes.FIELDS_PARAMETER, required = false) String fields,
+            WebRequest webRequest
+    ) {
+        Set<UserField> selected = UserField.parse(fields);
+        UserViewPage page = userService.findUserViews(
+                query == null ? UserQuery.all() : query, after, pageLimit(limit), selected);
+        String etag = UserETags.of(page, selected);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(page.only(selected));
+    }
+
+    @Operation(
+            summary = "Check whether an email is taken",
+            description = "200 if a user with this email exists, 404 otherwise. "
+                    + "Most free emails are answered from an in-memory Bloom filter without a database query"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Email is taken"),
+            @ApiResponse(responseCode = "404", description = "Email is free")
+    })
+    @RequestMapping(value = "/by-email/{email}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> emailExists(
+            @Parameter(description = "User email", example = "ivan.petrov@example.com")
+            @PathVariable String email
+    ) {
+        // «точно нет» от фильтра — без запроса; «возможно есть» проверяет кэшируемый findByEmail
+        boolean exists = emailBloomFilter.mightContain(email) && userService.findByEmail(email).isPresent();
+        return exists ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    @Operation(
+            summary = "Stream users",
+            description = "Streams all users ordered by id as NDJSON with constant server memory"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "OK")
+    })
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(
+            @Parameter(description = "Start after this id", example = "0")
+            @RequestParam(required = false) Long after
+    ) {
+        long from = (after == null) ? 0L : after;
+        ObjectWriter writer = objectMapper.writerFor(UserDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        StreamingResponseBody body = out -> userService.streamUsers(from, user -> {
+            try {
+                writer.writeValue(out, user);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @Operation(summary = "Update user")
@@ -140,16 +316,36 @@ public class UserController {
                             schema = @Schema(implementation = ApiError.class),
                             examples = @ExampleObject(value = ERROR_EMAIL_EXISTS)
                     )
+            ),
+            @ApiResponse(
+                    responseCode = "412",
+                    description = "If-Match does not match the current ETag",
+                    content = @Content(schema = @Schema(implementation = ApiError.class))
+            ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Idempotency-Key already used for a different request",
+                    content = @Content(schema = @Schema(implementation = ApiError.class))
             )
     })
+    @Parameter(
+            in = ParameterIn.HEADER,
+            name = IdempotencyFilter.IDEMPOTENCY_KEY,
+            description = "Client-generated key; a retry with the same key replays the original response",
+            schema = @Schema(type = "string", maxLength = IdempotencyFilter.MAX_KEY_LENGTH)
+    )
     @PutMapping("/{id}")
-    public EntityModel<UserDto> update(
+    public ResponseEntity<EntityModel<UserDto>> update(
             @Parameter(description = "User id", example = "1")
             @PathVariable Long id,
+            @Parameter(description = "ETag from a previous GET; the update is rejected with 412 if the user changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody UserUpdateRequest request
     ) {
-        UserDto updated = userService.updateUser(id, request);
-        return assembler.toModel(updated);
+        UserDto updated = userService.updateUser(id, request, UserETags.expectedVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(UserETags.of(updated))
+                .body(assembler.toModel(updated));
     }
 
     @Operation(summary = "Delete user")
@@ -172,4 +368,8 @@ public class UserController {
         userService.deleteUser(id);
         return ResponseEntity.noContent().build();
     }
+
+    private static int pageLimit(Integer limit) {
+        return (limit == null) ? DEFAULT_PAGE_LIMIT : Math.clamp(limit, 1, MAX_PAGE_LIMIT);
+    }
 }
@@ -0,0 +1,100 @@
+package ru.itwizardry.userservice.api;
+
+import ru.itwizardry.userservice.dto.UserDto;
+import ru.itwizardry.userservice.dto.UserField;
+import ru.itwizardry.userservice.dto.UserPage;
+import ru.itwizardry.userservice.dto.UserView;
+import ru.itwizardry.userservice.dto.UserViewPage;
+import ru.itwizardry.userservice.exception.PreconditionFailedException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+
+// Strong ETag'и из версии строки: сравнение без сериализации тела.
+final class UserETags {
+
+    private UserETags() {
+    }
+
+    static String of(UserDto user) {
+        return "\"" + user.version() + "\"";
+    }
+
+    // у компактного представления свой ETag: другой набор полей — другие байты
+    static String of(UserDto user, Set<UserField> fields) {
+        return "\"" + user.version() + "-" + mask(fields) + "\"";
+    }
+
+    // страница меняется, если поменялся состав, любая из версий или курсор следующей страницы
+    static String of(UserPage page) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+        for (UserDto user : page.content()) {
+            buffer.clear();
+            buffer.putLong(user.id()).putLong(user.version());
+            digest.update(buffer.array());
+        }
+        return finish(digest, page.nextAfter(), "");
+    }
+
+    static String of(UserViewPage page, Set<UserField> fields) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+        for (UserView user : page.content()) {
+            buffer.clear();
+            buffer.putLong(user.id()).putLong(user.version());
+            digest.update(buffer.array());
+        }
+        return finish(digest, page.nextAfter(), "-" + mask(fields));
+    }
+
+    private static String finish(MessageDigest digest, String nextAfter, String suffix) {
+        if (nextAfter != null) {
+            digest.update(nextAfter.getBytes(StandardCharsets.UTF_8));
+        }
+        return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + suffix + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static int mask(Set<UserField> fields) {
+        int mask = 0;
+        for (UserField field : fields) {
+            mask |= 1 << field.ordinal();
+        }
+        return mask;
+    }
+
+    // null — заголовка нет или "*": обновляем без проверки версии
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return null;
+        }
+        String tag = ifMatch.strip();
+        if (tag.equals("*")) {
+            return null;
+        }
+        // weak ETag (W/"...") в If-Match по RFC 9110 не совпадает никогда
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw new PreconditionFailedException("If-Match must be a single strong ETag, got: " + tag);
+        }
+        // версия — до '-': годится ETag и полного, и компактного представления
+        String value = tag.substring(1, tag.length() - 1);
+        int dash = value.indexOf('-');
+        try {
+            return Long.parseLong(dash < 0 ? value : value.substring(0, dash));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match does not match any version: " + tag);
+        }
+    }
+}
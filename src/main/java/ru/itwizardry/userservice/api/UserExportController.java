@@ -0,0 +1,199 @@
+package ru.itwizardry.userservice.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.itwizardry.userservice.api.error.ApiError;
+import ru.itwizardry.userservice.api.error.ApiErrorWriter;
+import ru.itwizardry.userservice.exception.InvalidQueryParameterException;
+import ru.itwizardry.userservice.service.UserExporter;
+import ru.itwizardry.userservice.service.UserExporter.Format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+@Tag(name = "Users")
+@RestController
+@RequestMapping("/api/users/export")
+public class UserExportController {
+
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final UserExporter userExporter;
+    // выгрузка держит соединение с базой (и разрешение db-шлюза) всё время скачивания:
+    // несколько медленных клиентов не должны занять весь пул
+    private final Semaphore exports;
+    private final String retryAfterSeconds;
+
+    public UserExportController(
+            UserExporter userExporter,
+            @Value("${app.export.max-concurrent:2}") int maxConcurrent,
+            @Value("${app.export.retry-after:PT5S}") Duration retryAfter
+    ) {
+        this.userExporter = userExporter;
+        this.exports = new Semaphore(maxConcurrent);
+        this.retryAfterSeconds = Long.toString(Math.max(1, retryAfter.toSeconds()));
+    }
+
+    // Пишем прямо в ответ на потоке запроса: StreamingResponseBody оборвал бы выгрузку по
+    // spring.mvc.async.request-timeout (10m в docker-профиле), а полная выгрузка большой таблицы идёт дольше
+    @Operation(
+            summary = "Export users",
+            description = """
+                    Full snapshot of active users ordered by id, produced by PostgreSQL COPY. \
+                    CSV with a header row by default, NDJSON with `Accept: application/x-ndjson`. \
+                    Gzip-compressed on the fly when the client sends `Accept-Encoding: gzip`. \
+                    If the download breaks, resume with `after` = the last id received."""
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "OK",
+                    content = {
+                            @Content(mediaType = TEXT_CSV_VALUE),
+                            @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE)
+                    }
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid offset",
+                    content = @Content(schema = @Schema(implementation = ApiError.class))
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Too many exports in progress, retry after `Retry-After` seconds",
+                    content = @Content(schema = @Schema(implementation = ApiError.class))
+            )
+    })
+    @GetMapping(produces = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public void export(
+            @Parameter(description = "Export users with id greater than this", example = "0")
+            @RequestParam(defaultValue = "0") long after,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        if (after < 0) {
+            throw new InvalidQueryParameterException("after", "must be >= 0");
+        }
+        if (!exports.tryAcquire()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            ApiErrorWriter.write(request, response, HttpStatus.SERVICE_UNAVAILABLE, "Service Overloaded",
+                    "Too many exports in progress, retry later", "EXPORT_BUSY");
+            return;
+        }
+        try {
+            write(after, accept, acceptEncoding, response);
+        } catch (IOException | RuntimeException e) {
+            // ещё ничего не ушло — убираем заголовки выгрузки, ответ об ошибке напишет GlobalExceptionHandler.
+            // Если ушло, он не трогает ответ, и контейнер обрывает соединение
+            if (!response.isCommitted()) {
+                response.reset();
+            }
+            throw e;
+        } finally {
+            exports.release();
+        }
+    }
+
+    private void write(long after, String accept, String acceptEncoding, HttpServletResponse response)
+            throws IOException {
+        boolean ndjson = accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+        Format format = ndjson ? Format.NDJSON : Format.CSV;
+        boolean gzip = acceptsGzip(acceptEncoding);
+
+        response.setContentType(ndjson ? MediaType.APPLICATION_NDJSON_VALUE : TEXT_CSV_VALUE + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(ndjson ? "users.ndjson" : "users.csv")
+                .build()
+                .toString());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        OutputStream out = response.getOutputStream();
+        if (!gzip) {
+            userExporter.export(format, after, out);
+            return;
+        }
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        // nonClosing: поток ответа закрывает контейнер. Трейлер gzip пишем только после успешной выгрузки:
+        // иначе обрезанный файл выглядел бы целым
+        GzipStream zip = new GzipStream(StreamUtils.nonClosing(out));
+        try {
+            userExporter.export(format, after, zip);
+            zip.finish();
+        } finally {
+            zip.release();
+        }
+    }
+
+    // gzip с q > 0, явно или через *; "gzip;q=0" — явный отказ, и * его не отменяет
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].strip().toLowerCase(Locale.ROOT);
+            double q = quality(parts);
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = q;
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        Double q = (gzip != null) ? gzip : any;
+        return q != null && q > 0;
+    }
+
+    // q без значения или с мусором считаем нулём: лучше не сжать, чем отдать gzip тому, кто его не просил
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].strip();
+            if (param.regionMatches(true, 0, "q=", 0, 2)) {
+                try {
+                    return Double.parseDouble(param.substring(2).strip());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // close() дописал бы трейлер и после ошибки; release() только освобождает Deflater
+    private static final class GzipStream extends GZIPOutputStream {
+
+        GzipStream(OutputStream out) throws IOException {
+            super(out, 64 * 1024);
+        }
+
+        void release() {
+            def.end();
+        }
+    }
+}
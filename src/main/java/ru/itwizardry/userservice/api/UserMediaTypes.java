@@ -0,0 +1,15 @@
+package ru.itwizardry.userservice.api;
+
+import org.springframework.http.MediaType;
+
+public final class UserMediaTypes {
+
+    // JSON без HAL-ссылок, поля выбираются через ?fields=; бинарный вариант того же — application/cbor
+    public static final String COMPACT_JSON_VALUE = "application/vnd.users.compact+json";
+    public static final MediaType COMPACT_JSON = MediaType.parseMediaType(COMPACT_JSON_VALUE);
+
+    public static final String FIELDS_PARAMETER = "fields";
+
+    private UserMediaTypes() {
+    }
+}
@@ -0,0 +1,79 @@
+package ru.itwizardry.userservice.api.error;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Пишет {@link ApiError} в JSON напрямую через JsonGenerator: без ObjectMapper и без промежуточного record.
+ * Имена полей закодированы заранее, время — в UTC.
+ * Формат тот же, что у ApiError через Jackson, включая число знаков в долях секунды (ApiErrorWriterTest).
+ */
+public final class ApiErrorWriter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final SerializedString TIMESTAMP = new SerializedString("timestamp");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString ERROR = new SerializedString("error");
+    private static final SerializedString MESSAGE = new SerializedString("message");
+    private static final SerializedString CODE = new SerializedString("code");
+    private static final SerializedString PATH = new SerializedString("path");
+
+    private ApiErrorWriter() {}
+
+    // без Accept, */* или любой *json — отвечаем JSON; клиенту, который просил только CBOR, пусть отвечает конвертер
+    public static boolean acceptsJson(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return accept == null || accept.isEmpty() || accept.contains("json") || accept.contains("*/*");
+    }
+
+    public static byte[] toJson(HttpStatus status, String error, String message, String code, String path) {
+        return toJson(Instant.now(), status, error, message, code, path);
+    }
+
+    static byte[] toJson(Instant timestamp, HttpStatus status, String error, String message, String code, String path) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator gen = JSON.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeFieldName(TIMESTAMP);
+            // как OffsetDateTime у Jackson: Instant.toString() дополнял бы доли секунды до 3/6/9 знаков
+            gen.writeString(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(timestamp.atOffset(ZoneOffset.UTC)));
+            gen.writeFieldName(STATUS);
+            gen.writeNumber(status.value());
+            gen.writeFieldName(ERROR);
+            gen.writeString(error);
+            gen.writeFieldName(MESSAGE);
+            gen.writeString(message);
+            gen.writeFieldName(CODE);
+            gen.writeString(code);
+            gen.writeFieldName(PATH);
+            gen.writeString(path);
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static void write(HttpServletRequest request, HttpServletResponse response, HttpStatus status,
+                             String error, String message, String code) throws IOException {
+        byte[] body = toJson(status, error, message, code, request.getRequestURI());
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
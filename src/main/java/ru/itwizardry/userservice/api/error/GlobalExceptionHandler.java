@@ -1,19 +1,26 @@
 package ru.itwizardry.userservice.api.error;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.itwizardry.userservice.exception.BatchTooLargeException;
 import ru.itwizardry.userservice.exception.EmailAlreadyExistsException;
+import ru.itwizardry.userservice.exception.InvalidQueryParameterException;
+import ru.itwizardry.userservice.exception.PreconditionFailedException;
 import ru.itwizardry.userservice.exception.UserNotFoundException;
 
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -21,14 +28,37 @@ import java.util.stream.Collectors;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    // 404 и 409 — самые частые ответы (боты перебирают id), поэтому тело пишется напрямую, см. writeFast
     @ExceptionHandler(UserNotFoundException.class)
-    public ResponseEntity<ApiError> handleUserNotFound(UserNotFoundException ex, HttpServletRequest req) {
-        return build(HttpStatus.NOT_FOUND, "User Not Found", ex.getMessage(), "USER_NOT_FOUND", req);
+    public ResponseEntity<?> handleUserNotFound(UserNotFoundException ex, HttpServletRequest req) {
+        return writeFast(HttpStatus.NOT_FOUND, "User Not Found", ex.getMessage(), "USER_NOT_FOUND", req);
     }
 
     @ExceptionHandler(EmailAlreadyExistsException.class)
-    public ResponseEntity<ApiError> handleDuplicateEmail(EmailAlreadyExistsException ex, HttpServletRequest req) {
-        return build(HttpStatus.CONFLICT, "Duplicate Email", ex.getMessage(), "EMAIL_ALREADY_EXISTS", req);
+    public ResponseEntity<?> handleDuplicateEmail(EmailAlreadyExistsException ex, HttpServletRequest req) {
+        return writeFast(HttpStatus.CONFLICT, "Duplicate Email", ex.getMessage(), "EMAIL_ALREADY_EXISTS", req);
+    }
+
+    @ExceptionHandler(InvalidQueryParameterException.class)
+    public ResponseEntity<ApiError> handleInvalidQueryParameter(InvalidQueryParameterException ex, HttpServletRequest req) {
+        return build(HttpStatus.BAD_REQUEST, "Invalid Parameter", ex.getMessage(), "INVALID_PARAMETER", req);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ApiError> handlePreconditionFailed(PreconditionFailedException ex, HttpServletRequest req) {
+        return build(HttpStatus.PRECONDITION_FAILED, "Precondition Failed", ex.getMessage(), "PRECONDITION_FAILED", req);
+    }
+
+    @ExceptionHandler(BatchTooLargeException.class)
+    public ResponseEntity<ApiError> handleBatchTooLarge(BatchTooLargeException ex, HttpServletRequest req) {
+        return build(HttpStatus.PAYLOAD_TOO_LARGE, "Batch Too Large", ex.getMessage(), "BATCH_TOO_LARGE", req);
+    }
+
+    // Параллельный PUT успел изменить строку между чтением и UPDATE (@Version).
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ApiError> handleOptimisticLock(OptimisticLockingFailureException ex, HttpServletRequest req) {
+        return build(HttpStatus.CONFLICT, "Concurrent Modification",
+                "Resource was modified concurrently, re-read and retry", "CONCURRENT_MODIFICATION", req);
     }
 
     // На случай, если где-то забудешь обернуть в EmailAlreadyExistsException.
@@ -74,15 +104,31 @@ public class GlobalExceptionHandler {
     }
 
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<ApiError> handleUnexpected(Exception ex, HttpServletRequest req) {
+    public ResponseEntity<ApiError> handleUnexpected(Exception ex, HttpServletRequest req, HttpServletResponse res)
+            throws Exception {
+        // тело уже частично отправлено (выгрузка, поток): JSON в его середине клиент примет за данные.
+        // Пробрасываем дальше — контейнер оборвёт соединение, и клиент увидит незавершённый ответ
+        if (res.isCommitted()) {
+            log.warn("Response already committed, aborting [{}]: {}", req.getRequestURI(), ex.toString());
+            throw ex;
+        }
         log.error("Unexpected error", ex);
         return build(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error",
                 "Unexpected error occurred", "INTERNAL_ERROR", req);
     }
 
+    // готовые байты с явным Content-Type: конвертер пишет их как есть, без сериализации и без negotiation
+    private ResponseEntity<?> writeFast(HttpStatus status, String error, String message, String code, HttpServletRequest req) {
+        if (!ApiErrorWriter.acceptsJson(req)) {
+            return build(status, error, message, code, req);
+        }
+        byte[] body = ApiErrorWriter.toJson(status, error, message, code, req.getRequestURI());
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     private ResponseEntity<ApiError> build(HttpStatus status, String error, String message, String code, HttpServletRequest req) {
         ApiError body = new ApiError(
-                OffsetDateTime.now(),
+                OffsetDateTime.now(ZoneOffset.UTC),
                 status.value(),
                 error,
                 message,
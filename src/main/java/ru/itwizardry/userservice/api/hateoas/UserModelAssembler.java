@@ -1,24 +1,82 @@
 package ru.itwizardry.userservice.api.hateoas;
 
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import ru.itwizardry.userservice.api.UserController;
 import ru.itwizardry.userservice.dto.UserDto;
+import ru.itwizardry.userservice.dto.UserPage;
+
+import java.util.List;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
 @Component
 public class UserModelAssembler implements RepresentationModelAssembler<UserDto, EntityModel<UserDto>> {
 
+    private static final String REQUEST_LINKS_ATTRIBUTE = UserModelAssembler.class.getName() + ".links";
+
     @Override
     public EntityModel<UserDto> toModel(UserDto user) {
+        // linkTo(methodOn(...)) на каждого пользователя — CGLIB-прокси и разбор текущего запроса;
+        // база и ссылка "users" вычисляются один раз на запрос, остальное — конкатенация строк
+        RequestLinks links = requestLinks();
+        String href = links.base() + "/" + user.id();
         return EntityModel.of(
                 user,
-                linkTo(methodOn(UserController.class).getById(user.id())).withSelfRel(),
-                linkTo(methodOn(UserController.class).getAll(null)).withRel("users"),
-                linkTo(UserController.class).slash(user.id()).withRel("update"),
-                linkTo(UserController.class).slash(user.id()).withRel("delete")
+                Link.of(href).withSelfRel(),
+                links.users(),
+                Link.of(href).withRel("update"),
+                Link.of(href).withRel("delete")
+        );
+    }
+
+    public CollectionModel<EntityModel<UserDto>> toPageModel(UserPage page) {
+        List<EntityModel<UserDto>> content = page.content().stream()
+                .map(this::toModel)
+                .toList();
+
+        // ссылки страницы — текущий запрос со всеми фильтрами, у next заменён только курсор
+        CollectionModel<EntityModel<UserDto>> model = CollectionModel.of(
+                content,
+                Link.of(ServletUriComponentsBuilder.fromCurrentRequest().build().toUriString()).withSelfRel()
         );
+        if (page.hasNext()) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", page.nextAfter())
+                    .build()
+                    .toUriString();
+            model.add(Link.of(next).withRel(IanaLinkRelations.NEXT));
+        }
+        return model;
+    }
+
+    private static RequestLinks requestLinks() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return RequestLinks.resolve();
+        }
+        if (attributes.getAttribute(REQUEST_LINKS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof RequestLinks cached) {
+            return cached;
+        }
+        RequestLinks links = RequestLinks.resolve();
+        attributes.setAttribute(REQUEST_LINKS_ATTRIBUTE, links, RequestAttributes.SCOPE_REQUEST);
+        return links;
+    }
+
+    private record RequestLinks(String base, Link users) {
+
+        static RequestLinks resolve() {
+            return new RequestLinks(
+                    linkTo(UserController.class).toUri().toString(),
+                    linkTo(methodOn(UserController.class).getAll(null, null, null, null)).withRel("users")
+            );
+        }
     }
 }
@@ -0,0 +1,163 @@
+package ru.itwizardry.userservice.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itwizardry.userservice.dto.UserChangeDto;
+import ru.itwizardry.userservice.repository.UserRepository;
+import ru.itwizardry.userservice.service.UserChangeService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Bloom-фильтр занятых email: «точно нет» отвечает без похода в БД, «возможно есть» проверяется запросом.
+ * Строится при старте потоком users.email, дальше свои записи добавляются сразу ({@link #add}),
+ * чужие (других инстансов) — из ленты user_changes раз в refresh-rate-ms. Удалённые и сменённые адреса
+ * из фильтра не уходят до пересборки раз в rebuild-interval — это только лишние «возможно есть».
+ * Пока фильтр не построен, {@link #isReady()} ложно и все ответы «возможно есть».
+ */
+@Slf4j
+@Component
+public class EmailBloomFilter {
+
+    private final UserRepository userRepository;
+    private final UserChangeService userChangeService;
+    private final TransactionTemplate snapshotTransaction;
+    private final Counter negative;
+    private final Counter positive;
+
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double fpp;
+    private final long rebuildIntervalNanos;
+    private final int batchSize;
+
+    private volatile BloomFilter filter;
+    // во время пересборки add() пишет и сюда, чтобы новый фильтр не потерял свежие адреса
+    private volatile BloomFilter building;
+    private long cursor;
+    private long builtAt;
+
+    public EmailBloomFilter(
+            UserRepository userRepository,
+            UserChangeService userChangeService,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.email-filter.enabled:true}") boolean enabled,
+            @Value("${app.email-filter.expected-insertions:1000000}") long expectedInsertions,
+            @Value("${app.email-filter.fpp:0.01}") double fpp,
+            @Value("${app.email-filter.rebuild-interval:PT6H}") Duration rebuildInterval,
+            @Value("${app.changes.batch-size:1000}") int batchSize
+    ) {
+        this.userRepository = userRepository;
+        this.userChangeService = userChangeService;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.negative = checks(meterRegistry, "negative");
+        this.positive = checks(meterRegistry, "positive");
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.rebuildIntervalNanos = rebuildInterval.toNanos();
+        this.batchSize = batchSize;
+    }
+
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    public boolean mightContain(String email) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return true;
+        }
+        boolean result = current.mightContain(email);
+        (result ? positive : negative).increment();
+        return result;
+    }
+
+    // зовётся в транзакции записи, до коммита: к моменту, когда строку видно, адрес уже в фильтре
+    public void add(String email) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(email);
+        }
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(email);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.email-filter.refresh-rate-ms:1000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        if (filter == null || System.nanoTime() - builtAt > rebuildIntervalNanos) {
+            rebuild();
+        } else {
+            cursor = catchUp(filter, cursor);
+        }
+    }
+
+    private void rebuild() {
+        long started = System.nanoTime();
+        // seq, count и стрим — из одного снимка: по отдельности они могли бы уйти на разные реплики,
+        // и строка, видная в seq, но не в стриме, не догналась бы по ленте
+        Snapshot snapshot;
+        try {
+            snapshot = snapshotTransaction.execute(status -> {
+                long since = userChangeService.lastSeq();
+                long users = userRepository.count();
+                BloomFilter fresh = new BloomFilter(Math.max(expectedInsertions, users * 2), fpp);
+                building = fresh;
+                try (Stream<String> emails = userRepository.streamAllEmails()) {
+                    emails.forEach(fresh::put);
+                }
+                return new Snapshot(fresh, since, users);
+            });
+            cursor = catchUp(snapshot.filter(), snapshot.since());
+            filter = snapshot.filter();
+            builtAt = System.nanoTime();
+        } finally {
+            building = null;
+        }
+        log.info("Email Bloom filter built [users={}, bits={}, tookMs={}]",
+                snapshot.users(), snapshot.filter().bitCount(),
+                Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    private long catchUp(BloomFilter target, long since) {
+        long seq = since;
+        List<UserChangeDto> changes;
+        do {
+            changes = userChangeService.findChanges(seq, batchSize);
+            for (UserChangeDto change : changes) {
+                if (!change.deleted()) {
+                    target.put(change.user().email());
+                }
+                seq = change.seq();
+            }
+        } while (changes.size() == batchSize);
+        return seq;
+    }
+
+    private record Snapshot(BloomFilter filter, long since, long users) {
+    }
+
+    private static Counter checks(MeterRegistry registry, String result) {
+        return Counter.builder("email.filter.checks")
+                .description("Email existence checks answered by the Bloom filter")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,84 @@
+package ru.itwizardry.userservice.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import static ru.itwizardry.userservice.config.CacheConfig.USERS_BY_EMAIL;
+import static ru.itwizardry.userservice.config.CacheConfig.USERS_BY_ID;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserCacheInvalidator {
+
+    private final CacheManager cacheManager;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.cache.invalidation-topic:user.cache.invalidation}")
+    private String topic;
+
+    @Value("${app.cache.broadcast-evictions:true}")
+    private boolean broadcastEvictions;
+
+    // после коммита: иначе параллельное чтение успеет положить в кэш ещё старую строку
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        evictLocal(event);
+        if (!broadcastEvictions) {
+            return;
+        }
+
+        final String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize UserChangedEvent to JSON", e);
+        }
+
+        try {
+            kafkaTemplate.send(topic, String.valueOf(event.id()), payload)
+                    .whenComplete((result, ex) -> {
+                        if (ex != null) {
+                            logBroadcastFailure(event, ex);
+                        }
+                    });
+        } catch (RuntimeException ex) {
+            logBroadcastFailure(event, ex);
+        }
+    }
+
+    // у каждого инстанса своя группа, поэтому эвикшн получают все, включая отправителя
+    @KafkaListener(
+            topics = "${app.cache.invalidation-topic:user.cache.invalidation}",
+            groupId = "${spring.application.name}-cache-#{T(java.util.UUID).randomUUID()}"
+    )
+    public void onRemoteEviction(String payload) throws JsonProcessingException {
+        evictLocal(objectMapper.readValue(payload, UserChangedEvent.class));
+    }
+
+    private void logBroadcastFailure(UserChangedEvent event, Throwable ex) {
+        // остальные инстансы догонят по TTL
+        log.warn("Failed to broadcast cache eviction [id={}, topic={}]", event.id(), topic, ex);
+    }
+
+    private void evictLocal(UserChangedEvent event) {
+        Cache byId = cacheManager.getCache(USERS_BY_ID);
+        if (byId != null && event.id() != null) {
+            byId.evict(event.id());
+        }
+        Cache byEmail = cacheManager.getCache(USERS_BY_EMAIL);
+        if (byEmail != null && event.emails() != null) {
+            event.emails().forEach(byEmail::evict);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.itwizardry.userservice.cache;
+
+import java.util.List;
+
+// emails: все адреса, под которыми запись могла лежать в кэше (старый и новый)
+public record UserChangedEvent(
+        Long id,
+        List<String> emails
+) {
+    public static UserChangedEvent of(Long id, String... emails) {
+        return new UserChangedEvent(id, List.of(emails));
+    }
+}
@@ -0,0 +1,36 @@
+package ru.itwizardry.userservice.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String USERS_BY_ID = "usersById";
+    public static final String USERS_BY_EMAIL = "usersByEmail";
+
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> userCacheCustomizer(
+            @Value("${app.cache.users.max-size:10000}") long maxSize,
+            @Value("${app.cache.users.ttl:PT5M}") Duration ttl
+    ) {
+        return cacheManager -> {
+            // recordStats: hit/miss/eviction попадают в Micrometer как cache.gets / cache.evictions
+            cacheManager.setCaffeine(Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(ttl)
+                    .recordStats());
+            cacheManager.setAllowNullValues(false);
+            cacheManager.setCacheNames(List.of(USERS_BY_ID, USERS_BY_EMAIL));
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package ru.itwizardry.userservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.accept.ContentNegotiationStrategy;
+import org.springframework.web.accept.HeaderContentNegotiationStrategy;
+import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.itwizardry.userservice.api.UserMediaTypes;
+
+import java.util.List;
+
+import static org.springframework.web.accept.ContentNegotiationStrategy.MEDIA_TYPE_ALL_LIST;
+
+@Configuration
+public class ContentNegotiationConfig implements WebMvcConfigurer {
+
+    // ?fields= — это компактный режим (JSON, или CBOR, если он явно запрошен); без параметра решает заголовок
+    @Override
+    public void configureContentNegotiation(ContentNegotiationConfigurer configurer) {
+        HeaderContentNegotiationStrategy header = new HeaderContentNegotiationStrategy();
+        ContentNegotiationStrategy sparseFields = request -> {
+            if (request.getParameter(UserMediaTypes.FIELDS_PARAMETER) == null) {
+                return MEDIA_TYPE_ALL_LIST;
+            }
+            return header.resolveMediaTypes(request).contains(MediaType.APPLICATION_CBOR)
+                    ? List.of(MediaType.APPLICATION_CBOR)
+                    : List.of(UserMediaTypes.COMPACT_JSON);
+        };
+        configurer.strategies(List.of(sparseFields, header));
+    }
+}
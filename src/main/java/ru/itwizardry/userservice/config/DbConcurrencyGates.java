@@ -0,0 +1,41 @@
+package ru.itwizardry.userservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Ставит {@link ConcurrencyLimitedDataSource} перед пулом. Разрешений столько, сколько соединений
+ * в этом пуле ({@code app.db.gate.permits}, если задан): при репликах у primary и у каждой реплики свой шлюз,
+ * и чтения с реплик не отнимают разрешения у записи.
+ */
+public class DbConcurrencyGates {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final int permits;
+    private final int defaultPermits;
+    private final Duration acquireTimeout;
+
+    // permits <= 0 — по размеру пула; defaultPermits — для пулов, размер которых не узнать
+    public DbConcurrencyGates(ObjectProvider<MeterRegistry> meterRegistry, int permits, int defaultPermits,
+                              Duration acquireTimeout) {
+        this.meterRegistry = meterRegistry;
+        this.permits = permits;
+        this.defaultPermits = defaultPermits;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public DataSource gate(DataSource pool, String name) {
+        return new ConcurrencyLimitedDataSource(pool, name, permitsFor(pool), acquireTimeout, meterRegistry.getObject());
+    }
+
+    int permitsFor(DataSource pool) {
+        if (permits > 0) {
+            return permits;
+        }
+        return (pool instanceof HikariDataSource hikari) ? hikari.getMaximumPoolSize() : defaultPermits;
+    }
+}
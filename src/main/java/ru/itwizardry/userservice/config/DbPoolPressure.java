@@ -0,0 +1,75 @@
+package ru.itwizardry.userservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перегрузка базы по метрикам пулов: среднее ожидание соединения за последний интервал
+ * (hikaricp.connections.acquire по всем пулам и db.gate.wait при виртуальных потоках) выше порога,
+ * или за интервал был хоть один таймаут получения соединения.
+ * Считается по разнице счётчиков между проверками, а не по накопленному среднему с запуска.
+ */
+public class DbPoolPressure {
+
+    private static final List<String> WAIT_TIMERS = List.of("hikaricp.connections.acquire", "db.gate.wait");
+    private static final String POOL_TIMEOUTS = "hikaricp.connections.timeout";
+
+    private final MeterRegistry registry;
+    private final long thresholdNanos;
+    // только из потока планировщика
+    private final Map<Meter.Id, double[]> previous = new HashMap<>();
+
+    private volatile boolean overloaded;
+    private volatile double recentWaitNanos;
+
+    public DbPoolPressure(MeterRegistry registry, Duration threshold) {
+        this.registry = registry;
+        this.thresholdNanos = threshold.toNanos();
+        Gauge.builder("db.pool.wait.recent", this, p -> p.recentWaitNanos / 1_000_000_000d)
+                .description("Mean wait for a DB connection over the last check interval, worst pool")
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("db.pool.overloaded", this, p -> p.overloaded ? 1 : 0)
+                .description("1 while heavy requests are shed because of DB pool pressure")
+                .register(registry);
+    }
+
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.shed.check-rate-ms:1000}")
+    public void check() {
+        double worstWait = 0;
+        for (String name : WAIT_TIMERS) {
+            for (Timer timer : registry.find(name).timers()) {
+                double[] delta = delta(timer.getId(), timer.count(), timer.totalTime(TimeUnit.NANOSECONDS));
+                if (delta[0] > 0) {
+                    worstWait = Math.max(worstWait, delta[1] / delta[0]);
+                }
+            }
+        }
+        boolean timedOut = false;
+        for (Counter counter : registry.find(POOL_TIMEOUTS).counters()) {
+            timedOut |= delta(counter.getId(), counter.count(), 0)[0] > 0;
+        }
+        recentWaitNanos = worstWait;
+        overloaded = timedOut || worstWait > thresholdNanos;
+    }
+
+    // {прирост count, прирост totalTime}; при первом наблюдении — нули
+    private double[] delta(Meter.Id id, double count, double total) {
+        double[] last = previous.put(id, new double[]{count, total});
+        return last == null ? new double[2] : new double[]{count - last[0], total - last[1]};
+    }
+}
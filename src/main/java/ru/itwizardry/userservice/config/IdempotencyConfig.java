@@ -0,0 +1,24 @@
+package ru.itwizardry.userservice.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.itwizardry.userservice.api.IdempotencyFilter;
+import ru.itwizardry.userservice.service.IdempotencyService;
+
+@Configuration
+@ConditionalOnProperty(name = "app.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyConfig {
+
+    // только create/update пользователя: POST /api/users и PUT /api/users/{id}
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            IdempotencyService idempotencyService
+    ) {
+        FilterRegistrationBean<IdempotencyFilter> registration =
+                new FilterRegistrationBean<>(new IdempotencyFilter(idempotencyService));
+        registration.addUrlPatterns("/api/users", "/api/users/*");
+        return registration;
+    }
+}
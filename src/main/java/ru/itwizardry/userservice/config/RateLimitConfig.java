@@ -0,0 +1,56 @@
+package ru.itwizardry.userservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import ru.itwizardry.userservice.api.RateLimitFilter;
+import ru.itwizardry.userservice.api.RateLimitFilter.Budget;
+import ru.itwizardry.userservice.api.RateLimitFilter.Clients;
+
+import java.time.Duration;
+import java.util.Set;
+
+@Configuration
+@ConditionalOnProperty(name = "app.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    @Bean
+    public DbPoolPressure dbPoolPressure(
+            MeterRegistry meterRegistry,
+            @Value("${app.rate-limit.shed.pool-wait-threshold:PT0.1S}") Duration threshold
+    ) {
+        return new DbPoolPressure(meterRegistry, threshold);
+    }
+
+    // раньше остальных фильтров /api: отказ не должен читать тело, идти в кэш идемпотентности или в базу
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(
+            DbPoolPressure dbPoolPressure,
+            MeterRegistry meterRegistry,
+            @Value("${app.rate-limit.bulk.permits-per-second:20}") double bulkRate,
+            @Value("${app.rate-limit.bulk.burst:40}") int bulkBurst,
+            @Value("${app.rate-limit.item.permits-per-second:200}") double itemRate,
+            @Value("${app.rate-limit.item.burst:400}") int itemBurst,
+            @Value("${app.rate-limit.max-clients:100000}") long maxClients,
+            @Value("${app.rate-limit.new-clients-per-second:100}") double newClientsPerSecond,
+            @Value("${app.rate-limit.api-keys:}") Set<String> apiKeys,
+            @Value("${app.rate-limit.shed.check-rate-ms:1000}") long checkRateMs
+    ) {
+        RateLimitFilter filter = new RateLimitFilter(
+                new Budget(bulkRate, bulkBurst),
+                new Budget(itemRate, itemBurst),
+                new Clients(apiKeys, maxClients, newClientsPerSecond),
+                dbPoolPressure::isOverloaded,
+                Duration.ofMillis(checkRateMs),
+                meterRegistry
+        );
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
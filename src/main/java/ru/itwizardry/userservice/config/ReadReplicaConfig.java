@@ -0,0 +1,94 @@
+package ru.itwizardry.userservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import ru.itwizardry.userservice.api.ReadYourWritesFilter;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Заменяет DataSource из автоконфигурации: primary — spring.datasource.*, реплики — app.datasource.replicas.urls
+// с теми же учётными данными и настройками spring.datasource.hikari.*.
+// С виртуальными потоками перед каждым пулом свой шлюз (DbConcurrencyGates), а не один на маршрутизатор
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replicas.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    @Bean
+    public ReadReplicas readReplicas(
+            DataSourceProperties properties,
+            Environment environment,
+            MeterRegistry meterRegistry,
+            ObjectProvider<DbConcurrencyGates> gates,
+            @Value("${app.datasource.replicas.max-lag:PT5S}") Duration maxLag,
+            @Value("${app.datasource.replicas.check-timeout:PT2S}") Duration checkTimeout
+    ) {
+        Binder binder = Binder.get(environment);
+        List<String> urls = binder.bind("app.datasource.replicas.urls", Bindable.listOf(String.class))
+                .orElseThrow(() -> new IllegalStateException("app.datasource.replicas.urls is empty"));
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            String name = "replica-" + (i + 1);
+            HikariDataSource replica = pool(properties, binder, urls.get(i), name);
+            replica.setReadOnly(true);
+            // пул реплики не бин, автоконфигурация метрик его не увидит
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put(name, gated(gates, replica, name));
+        }
+        return new ReadReplicas(replicas, maxLag, checkTimeout, meterRegistry);
+    }
+
+    @Bean
+    public DataSource dataSource(
+            DataSourceProperties properties,
+            Environment environment,
+            ReadReplicas readReplicas,
+            MeterRegistry meterRegistry,
+            ObjectProvider<DbConcurrencyGates> gates
+    ) {
+        HikariDataSource primary = pool(properties, Binder.get(environment), properties.determineUrl(), "primary");
+        return new ReadReplicaRoutingDataSource(gated(gates, primary, "primary"), readReplicas, meterRegistry);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${app.datasource.replicas.read-your-writes:PT5S}") Duration window,
+            @Value("${app.datasource.replicas.read-your-writes-clients:100000}") long maxClients
+    ) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(window, maxClients));
+        registration.addUrlPatterns("/api/*");
+        registration.setEnabled(!window.isZero());
+        return registration;
+    }
+
+    private static DataSource gated(ObjectProvider<DbConcurrencyGates> gates, HikariDataSource pool, String name) {
+        DbConcurrencyGates gate = gates.getIfAvailable();
+        return (gate == null) ? pool : gate.gate(pool, name);
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Binder binder, String url, String poolName) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(poolName);
+        return dataSource;
+    }
+}
@@ -0,0 +1,86 @@
+package ru.itwizardry.userservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.itwizardry.userservice.api.ReadYourWritesFilter;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Read-only транзакции читают с реплик, всё остальное идёт на primary.
+ * В начале {@code @Transactional(readOnly = true)} Spring вызывает {@code setReadOnly(true)} на соединении,
+ * а физическое соединение здесь берётся лениво, на первом запросе, — к этому моменту уже известно,
+ * какое нужно. Primary используется и для чтений, если клиент только что писал или здоровых реплик нет.
+ */
+public class ReadReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    private final DataSource primary;
+
+    public ReadReplicaRoutingDataSource(DataSource primary, ReadReplicas replicas, MeterRegistry registry) {
+        super(primary);
+        this.primary = primary;
+        setReadOnlyDataSource(new ReadOnlyTarget(primary, replicas, registry));
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static final class ReadOnlyTarget extends AbstractDataSource {
+
+        private final DataSource primary;
+        private final ReadReplicas replicas;
+        private final Counter toReplica;
+        private final Counter pinned;
+        private final Counter fallback;
+
+        private ReadOnlyTarget(DataSource primary, ReadReplicas replicas, MeterRegistry registry) {
+            this.primary = primary;
+            this.replicas = replicas;
+            this.toReplica = reads(registry, "replica");
+            this.pinned = reads(registry, "primary-pinned");
+            this.fallback = reads(registry, "primary-fallback");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (ReadYourWritesFilter.isPinnedToPrimary()) {
+                pinned.increment();
+                return primary.getConnection();
+            }
+            DataSource replica = replicas.pick();
+            if (replica == null) {
+                fallback.increment();
+                return primary.getConnection();
+            }
+            try {
+                Connection connection = replica.getConnection();
+                toReplica.increment();
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                replicas.markDown(replica, e);
+                fallback.increment();
+                return primary.getConnection();
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return primary.getConnection(username, password);
+        }
+
+        private static Counter reads(MeterRegistry registry, String target) {
+            return Counter.builder("db.reads.routed")
+                    .description("Read-only connections by the database they were routed to")
+                    .tag("target", target)
+                    .register(registry);
+        }
+    }
+}
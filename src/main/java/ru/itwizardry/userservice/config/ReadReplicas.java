@@ -0,0 +1,143 @@
+package ru.itwizardry.userservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Реплики для read-only транзакций. Реплика получает чтения, только пока последняя проверка
+ * прошла и отставание не больше {@code maxLag}; до первой проверки и без здоровых реплик
+ * {@link #pick()} возвращает {@code null} и чтения уходят на primary.
+ */
+@Slf4j
+public class ReadReplicas implements AutoCloseable {
+
+    // На простаивающем primary pg_last_xact_replay_timestamp() стареет без всякого отставания,
+    // поэтому реплика, проигравшая весь полученный WAL, считается догнавшей. NULL — реплика ещё ничего не проиграла.
+    static final String LAG_QUERY = """
+            SELECT CASE
+                     WHEN NOT pg_is_in_recovery() THEN 0
+                     WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                     ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000
+                   END
+            """;
+
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final int checkTimeoutSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadReplicas(Map<String, DataSource> replicas, Duration maxLag, Duration checkTimeout, MeterRegistry registry) {
+        this.replicas = new ArrayList<>(replicas.size());
+        this.maxLagMillis = maxLag.toMillis();
+        this.checkTimeoutSeconds = (int) Math.max(1, checkTimeout.toSeconds());
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource);
+            this.replicas.add(replica);
+            Gauge.builder("db.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .description("1 if the replica passed the last health and lag check")
+                    .tag("replica", name)
+                    .register(registry);
+            Gauge.builder("db.replica.lag", replica, r -> r.lagMillis / 1000.0)
+                    .description("Replication lag seen by the last check, -1 if unknown")
+                    .baseUnit("seconds")
+                    .tag("replica", name)
+                    .register(registry);
+        });
+    }
+
+    // Round-robin по здоровым репликам
+    public DataSource pick() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica.dataSource;
+            }
+        }
+        return null;
+    }
+
+    // Соединение не открылось между проверками — не ждём следующей проверки
+    public void markDown(DataSource dataSource, Exception cause) {
+        for (Replica replica : replicas) {
+            if (replica.dataSource == dataSource) {
+                down(replica, cause.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.check-rate-ms:5000}")
+    public void check() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(checkTimeoutSeconds);
+                try (ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+                    rs.next();
+                    double lag = rs.getDouble(1);
+                    if (rs.wasNull()) {
+                        replica.lagMillis = -1;
+                        down(replica, "replay position unknown");
+                    } else if (lag > maxLagMillis) {
+                        replica.lagMillis = (long) lag;
+                        down(replica, "lag " + (long) lag + " ms > " + maxLagMillis + " ms");
+                    } else {
+                        replica.lagMillis = (long) lag;
+                        up(replica);
+                    }
+                }
+            } catch (Exception e) {
+                replica.lagMillis = -1;
+                down(replica, e.getMessage());
+            }
+        }
+    }
+
+    private static void up(Replica replica) {
+        if (!replica.healthy) {
+            replica.healthy = true;
+            log.info("Read replica is back in rotation [replica={}, lagMs={}]", replica.name, replica.lagMillis);
+        }
+    }
+
+    private static void down(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Read replica removed from rotation [replica={}, reason={}]", replica.name, reason);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+        private volatile long lagMillis = -1;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.itwizardry.userservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Пул планировщика (spring.task.scheduling.pool.size) не меньше числа @Scheduled-задач: fixedDelay-задача
+// не перекрывается сама с собой, поэтому каждой хватает потока. С одним потоком по умолчанию
+// OutboxRelay (ждёт Kafka) или пересборка EmailBloomFilter задерживали бы DbPoolPressure.check
+// и ReadReplicas.check — сброс нагрузки и отключение реплик переставали бы работать как раз под нагрузкой
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {}
@@ -0,0 +1,44 @@
+package ru.itwizardry.userservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Включается вместе со spring.threads.virtual.enabled=true: Tomcat тогда сам обслуживает запросы на виртуальных потоках
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfig {
+
+    @Bean
+    static DbConcurrencyGates dbConcurrencyGates(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.db.gate.permits:0}") int permits,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int defaultPermits,
+            @Value("${app.db.gate.acquire-timeout:PT30S}") Duration acquireTimeout
+    ) {
+        return new DbConcurrencyGates(meterRegistry, permits, defaultPermits, acquireTimeout);
+    }
+
+    // пулы за маршрутизатором реплик получают шлюзы в ReadReplicaConfig, каждый по своему размеру
+    @Bean
+    static BeanPostProcessor dbConcurrencyGate(ObjectProvider<DbConcurrencyGates> gates) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitedDataSource)
+                        && !(bean instanceof ReadReplicaRoutingDataSource)) {
+                    return gates.getObject().gate(dataSource, "primary");
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -2,11 +2,14 @@ package ru.itwizardry.userservice.domain;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "users")
+// удалённые (deleted_at) не видны ни одному запросу через сущность, пока их не удалит UserPurger
+@SQLRestriction("deleted_at IS NULL")
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
@@ -16,13 +19,15 @@ import java.time.LocalDateTime;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 100)
     private String name;
 
-    @Column(nullable = false, unique = true, length = 255)
+    // уникален только среди неудалённых: ux_users_email_active или user_emails (011-users-soft-delete)
+    @Column(nullable = false, length = 255)
     private String email;
 
     @Column(nullable = false)
@@ -31,6 +36,14 @@ public class User {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    // UPDATE ... WHERE version = ?: параллельная запись не затрёт чужое изменение молча
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
     @PrePersist
     void prePersist() {
         this.createdAt = LocalDateTime.now();
@@ -0,0 +1,12 @@
+package ru.itwizardry.userservice.dto;
+
+// Сохранённый ответ на запрос с Idempotency-Key: повтор получает его без обращения к users и Kafka.
+public record IdempotentResponse(
+        String requestHash,
+        int status,
+        String location,
+        String contentType,
+        String etag,
+        String vary,
+        byte[] body
+) {}
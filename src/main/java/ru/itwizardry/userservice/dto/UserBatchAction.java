@@ -0,0 +1,7 @@
+package ru.itwizardry.userservice.dto;
+
+public enum UserBatchAction {
+    CREATE,
+    UPDATE,
+    DELETE
+}
@@ -0,0 +1,16 @@
+package ru.itwizardry.userservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(name = "UserBatchItem", description = "Single operation of a bulk request")
+public record UserBatchItem(
+
+        @Schema(description = "Operation", example = "CREATE")
+        UserBatchAction action,
+
+        @Schema(description = "User id, required for UPDATE and DELETE", example = "1")
+        Long id,
+
+        @Schema(description = "User payload, required for CREATE and UPDATE")
+        UserCreateRequest user
+) {}
@@ -0,0 +1,39 @@
+package ru.itwizardry.userservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(name = "UserBatchItemResult", description = "Outcome of a single bulk operation")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserBatchItemResult(
+
+        @Schema(description = "Position of the item in the request", example = "0")
+        int index,
+
+        @Schema(description = "Outcome", example = "CREATED")
+        Status status,
+
+        @Schema(description = "User id", example = "1")
+        Long id,
+
+        @Schema(description = "Stable machine-readable error code", example = "EMAIL_ALREADY_EXISTS")
+        String code,
+
+        @Schema(description = "Human readable error message", example = "User with email already exists: mikhail@test.com")
+        String message
+) {
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        FAILED
+    }
+
+    public static UserBatchItemResult ok(int index, Status status, Long id) {
+        return new UserBatchItemResult(index, status, id, null, null);
+    }
+
+    public static UserBatchItemResult failed(int index, String code, String message) {
+        return new UserBatchItemResult(index, Status.FAILED, null, code, message);
+    }
+}
@@ -0,0 +1,26 @@
+package ru.itwizardry.userservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(name = "UserBatchResponse", description = "Per-item results of a bulk request")
+public record UserBatchResponse(
+
+        @Schema(description = "Items in the request", example = "3")
+        int total,
+
+        @Schema(description = "Items applied", example = "2")
+        int succeeded,
+
+        @Schema(description = "Items rejected", example = "1")
+        int failed,
+
+        @Schema(description = "Results in request order")
+        List<UserBatchItemResult> results
+) {
+    public static UserBatchResponse of(List<UserBatchItemResult> results) {
+        int failed = (int) results.stream().filter(r -> r.status() == UserBatchItemResult.Status.FAILED).count();
+        return new UserBatchResponse(results.size(), results.size() - failed, failed, results);
+    }
+}
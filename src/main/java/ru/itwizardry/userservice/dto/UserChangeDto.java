@@ -0,0 +1,29 @@
+package ru.itwizardry.userservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(name = "UserChangeDto", description = "Change feed entry: the current state of a changed user or a tombstone")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserChangeDto(
+
+        @Schema(description = "Change sequence number; pass the last one seen as since", example = "42")
+        long seq,
+
+        @Schema(description = "User id", example = "1")
+        Long id,
+
+        @Schema(description = "true if the user was deleted (tombstone)", example = "false")
+        boolean deleted,
+
+        @Schema(description = "Current user state, absent for tombstones")
+        UserDto user
+) {
+    public static UserChangeDto of(long seq, UserDto user) {
+        return new UserChangeDto(seq, user.id(), false, user);
+    }
+
+    public static UserChangeDto tombstone(long seq, Long id) {
+        return new UserChangeDto(seq, id, true, null);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.itwizardry.userservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.time.LocalDateTime;
@@ -20,5 +21,10 @@ public record UserDto(
         int age,
 
         @Schema(description = "Creation timestamp", example = "2026-01-19T15:48:43.944")
-        LocalDateTime createdAt
+        LocalDateTime createdAt,
+
+        // в тело не попадает: клиенту версия приходит в ETag
+        @JsonIgnore
+        @Schema(hidden = true)
+        long version
 ) {}
@@ -0,0 +1,53 @@
+package ru.itwizardry.userservice.dto;
+
+import ru.itwizardry.userservice.exception.InvalidQueryParameterException;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Поля для ?fields=: имя в JSON совпадает с именем атрибута сущности
+public enum UserField {
+    ID("id"),
+    NAME("name"),
+    EMAIL("email"),
+    AGE("age"),
+    CREATED_AT("createdAt");
+
+    private static final Set<UserField> ALL = Collections.unmodifiableSet(EnumSet.allOf(UserField.class));
+
+    private final String property;
+
+    UserField(String property) {
+        this.property = property;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    // пусто — все поля
+    public static Set<UserField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        EnumSet<UserField> selected = EnumSet.noneOf(UserField.class);
+        for (String name : fields.split(",")) {
+            String property = name.trim();
+            if (property.isEmpty()) {
+                continue;
+            }
+            selected.add(fromProperty(property));
+        }
+        return selected.isEmpty() ? ALL : selected;
+    }
+
+    private static UserField fromProperty(String property) {
+        for (UserField field : values()) {
+            if (field.property.equalsIgnoreCase(property)) {
+                return field;
+            }
+        }
+        throw new InvalidQueryParameterException("fields", "Unsupported field: " + property);
+    }
+}
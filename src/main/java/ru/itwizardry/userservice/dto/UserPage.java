@@ -0,0 +1,12 @@
+package ru.itwizardry.userservice.dto;
+
+import java.util.List;
+
+public record UserPage(
+        List<UserDto> content,
+        String nextAfter
+) {
+    public boolean hasNext() {
+        return nextAfter != null;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.itwizardry.userservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+@Schema(name = "UserQuery", description = "User list filters and sort order")
+public record UserQuery(
+
+        @Schema(description = "Exact age", example = "30")
+        Integer age,
+
+        @Schema(description = "Minimum age, inclusive", example = "18")
+        Integer minAge,
+
+        @Schema(description = "Maximum age, inclusive", example = "65")
+        Integer maxAge,
+
+        @Schema(description = "Case-insensitive name prefix", example = "iva")
+        String namePrefix,
+
+        @Schema(description = "Created at or after (ISO-8601)", example = "2026-01-01T00:00:00")
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+        LocalDateTime createdFrom,
+
+        @Schema(description = "Created before (ISO-8601)", example = "2026-02-01T00:00:00")
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+        LocalDateTime createdTo,
+
+        @Schema(description = "Sort: id, age, name or createdAt, optionally followed by ,asc or ,desc", example = "age,desc")
+        String sort
+) {
+    public static UserQuery all() {
+        return new UserQuery(null, null, null, null, null, null, null);
+    }
+}
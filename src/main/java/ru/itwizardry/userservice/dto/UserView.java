@@ -0,0 +1,53 @@
+package ru.itwizardry.userservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static ru.itwizardry.userservice.dto.UserField.*;
+
+@Schema(name = "UserView", description = "Compact user representation without links; only the requested fields are present")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserView(
+
+        @Schema(description = "User id", example = "1")
+        Long id,
+
+        @Schema(description = "User name", example = "Ivan Petrov")
+        String name,
+
+        @Schema(description = "User email", example = "ivan.petrov@example.com")
+        String email,
+
+        @Schema(description = "User age", example = "25")
+        Integer age,
+
+        @Schema(description = "Creation timestamp", example = "2026-01-19T15:48:43.944")
+        LocalDateTime createdAt,
+
+        // для ETag, в тело не попадает
+        @JsonIgnore
+        @Schema(hidden = true)
+        Long version
+) {
+    public static UserView of(UserDto user) {
+        return new UserView(user.id(), user.name(), user.email(), user.age(), user.createdAt(), user.version());
+    }
+
+    public UserView only(Set<UserField> fields) {
+        if (fields.size() == UserField.values().length) {
+            return this;
+        }
+        return new UserView(
+                fields.contains(ID) ? id : null,
+                fields.contains(NAME) ? name : null,
+                fields.contains(EMAIL) ? email : null,
+                fields.contains(AGE) ? age : null,
+                fields.contains(CREATED_AT) ? createdAt : null,
+                version
+        );
+    }
+}
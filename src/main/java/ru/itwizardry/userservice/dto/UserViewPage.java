@@ -0,0 +1,20 @@
+package ru.itwizardry.userservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.Set;
+
+@Schema(name = "UserViewPage", description = "Page of compact users; pass nextAfter as `after` to get the next page")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserViewPage(
+        List<UserView> content,
+
+        @Schema(description = "Cursor of the next page, absent on the last page", example = "100")
+        String nextAfter
+) {
+    public UserViewPage only(Set<UserField> fields) {
+        return new UserViewPage(content.stream().map(view -> view.only(fields)).toList(), nextAfter);
+    }
+}
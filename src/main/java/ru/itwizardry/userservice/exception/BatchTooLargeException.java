@@ -0,0 +1,10 @@
+package ru.itwizardry.userservice.exception;
+
+public class BatchTooLargeException extends DomainException {
+
+    // processed > 0 только у NDJSON: он читается по ходу, и пачки до превышения уже применены
+    public BatchTooLargeException(int maxItems, int processed) {
+        super("Batch exceeds " + maxItems + " items"
+                + (processed > 0 ? "; the first " + processed + " items were processed" : ""));
+    }
+}
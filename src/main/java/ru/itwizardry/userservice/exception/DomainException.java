@@ -0,0 +1,16 @@
+package ru.itwizardry.userservice.exception;
+
+/**
+ * Ожидаемый бизнес-исход (404, 409, 412, 400), а не сбой.
+ * Стек не заполняется: он никому не нужен, а через прокси Spring и Hibernate стоит дороже самого ответа.
+ */
+public abstract class DomainException extends RuntimeException {
+
+    protected DomainException(String message) {
+        super(message, null, false, false);
+    }
+
+    protected DomainException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
@@ -1,6 +1,6 @@
 package ru.itwizardry.userservice.exception;
 
-public class EmailAlreadyExistsException extends RuntimeException {
+public class EmailAlreadyExistsException extends DomainException {
 
     public EmailAlreadyExistsException(String email) {
         super("User with email already exists: " + email);
@@ -0,0 +1,8 @@
+package ru.itwizardry.userservice.exception;
+
+public class InvalidQueryParameterException extends DomainException {
+
+    public InvalidQueryParameterException(String parameter, String message) {
+        super(parameter + ": " + message);
+    }
+}
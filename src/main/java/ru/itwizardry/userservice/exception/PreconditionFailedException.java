@@ -0,0 +1,8 @@
+package ru.itwizardry.userservice.exception;
+
+public class PreconditionFailedException extends DomainException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
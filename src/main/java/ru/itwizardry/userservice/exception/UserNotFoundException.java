@@ -1,6 +1,6 @@
 package ru.itwizardry.userservice.exception;
 
-public class UserNotFoundException extends RuntimeException {
+public class UserNotFoundException extends DomainException {
     public UserNotFoundException(Long id) {
 
         super("User with id " + id + " not found");
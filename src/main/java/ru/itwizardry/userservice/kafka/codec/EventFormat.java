@@ -0,0 +1,25 @@
+package ru.itwizardry.userservice.kafka.codec;
+
+public enum EventFormat {
+    JSON("application/json"),
+    CBOR("application/cbor");
+
+    private final String contentType;
+
+    EventFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public static EventFormat fromContentType(String contentType) {
+        for (EventFormat format : values()) {
+            if (format.contentType.equalsIgnoreCase(contentType)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported event content type: " + contentType);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.itwizardry.userservice.kafka.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.messaging.MessageHeaders;
+import ru.itwizardry.userservice.kafka.dto.UserEventDto;
+import ru.itwizardry.userservice.kafka.dto.UserEventRecord;
+import ru.itwizardry.userservice.kafka.dto.UserOperation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Кодирует UserEventDto в формат, выбранный для топика; формат уходит в заголовок contentType записи.
+public class UserEventCodec {
+
+    public static final int SCHEMA_VERSION = 2;
+
+    private static final UserOperation[] OPERATIONS = UserOperation.values();
+
+    private final ObjectWriter jsonWriter;
+    private final ObjectReader jsonReader;
+    private final ObjectWriter cborWriter;
+    private final ObjectReader cborReader;
+    private final EventFormat defaultFormat;
+    private final Map<String, EventFormat> topicFormats;
+
+    public UserEventCodec(ObjectMapper objectMapper, EventFormat defaultFormat, Map<String, EventFormat> topicFormats) {
+        this.jsonWriter = objectMapper.writerFor(UserEventDto.class);
+        this.jsonReader = objectMapper.readerFor(UserEventDto.class);
+        CBORMapper cborMapper = new CBORMapper();
+        this.cborWriter = cborMapper.writerFor(UserEventRecord.class);
+        this.cborReader = cborMapper.readerFor(UserEventRecord.class);
+        this.defaultFormat = defaultFormat;
+        this.topicFormats = Map.copyOf(topicFormats);
+    }
+
+    public EventFormat formatFor(String topic) {
+        return topicFormats.getOrDefault(topic, defaultFormat);
+    }
+
+    public byte[] encode(UserEventDto event, EventFormat format) {
+        try {
+            return switch (format) {
+                case JSON -> jsonWriter.writeValueAsBytes(event);
+                case CBOR -> cborWriter.writeValueAsBytes(
+                        new UserEventRecord(SCHEMA_VERSION, event.operation().ordinal(), event.email(),
+                                event.id(), event.changes()));
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode UserEventDto as " + format, e);
+        }
+    }
+
+    public UserEventDto decode(byte[] payload, EventFormat format) {
+        try {
+            return switch (format) {
+                case JSON -> jsonReader.readValue(payload);
+                case CBOR -> fromRecord(cborReader.readValue(payload));
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode UserEventDto from " + format, e);
+        }
+    }
+
+    public static ProducerRecord<String, byte[]> producerRecord(String topic, String key, byte[] payload, String contentType) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, key, payload);
+        record.headers().add(MessageHeaders.CONTENT_TYPE, contentType.getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    private static UserEventDto fromRecord(UserEventRecord record) {
+        if (record.schemaVersion() > SCHEMA_VERSION) {
+            throw new IllegalArgumentException("Unsupported user event schema version: " + record.schemaVersion());
+        }
+        if (record.operation() < 0 || record.operation() >= OPERATIONS.length) {
+            throw new IllegalArgumentException("Unknown user event operation: " + record.operation());
+        }
+        return new UserEventDto(OPERATIONS[record.operation()], record.email(), record.id(), record.changes());
+    }
+}
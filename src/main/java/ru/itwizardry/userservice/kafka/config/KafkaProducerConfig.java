@@ -1,9 +1,24 @@
 package ru.itwizardry.userservice.kafka.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import ru.itwizardry.userservice.kafka.codec.EventFormat;
+import ru.itwizardry.userservice.kafka.codec.UserEventCodec;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 public class KafkaProducerConfig {
@@ -12,4 +27,40 @@ public class KafkaProducerConfig {
     public KafkaTemplate<String, String> kafkaTemplate(ProducerFactory<String, String> producerFactory) {
         return new KafkaTemplate<>(producerFactory);
     }
-}
\ No newline at end of file
+
+    // События пользователей уходят байтами: JSON и CBOR идут одним путём, JSON на проводе не меняется.
+    // Настройки продюсера общие, сериализатор value задан объектом и перекрывает конфиг.
+    // Поверх них — батчинг и сжатие app.kafka.producer.*: при всплеске (batch-эндпоинт, импорт) события
+    // копятся linger и уходят сжатыми пачками по batch-size на партицию, а не запросом на событие.
+    @Bean
+    public KafkaTemplate<String, byte[]> userEventKafkaTemplate(
+            ProducerFactory<String, String> producerFactory,
+            @Value("${app.kafka.producer.linger:5ms}") Duration linger,
+            @Value("${app.kafka.producer.batch-size:65536}") int batchSize,
+            @Value("${app.kafka.producer.compression:lz4}") String compression,
+            @Value("${app.kafka.producer.idempotence:true}") boolean idempotence
+    ) {
+        Map<String, Object> config = new HashMap<>(producerFactory.getConfigurationProperties());
+        config.put(ProducerConfig.LINGER_MS_CONFIG, linger.toMillis());
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotence);
+        if (idempotence) {
+            // ретраи не дублируют и не переставляют события внутри партиции; требует acks=all
+            config.put(ProducerConfig.ACKS_CONFIG, "all");
+        }
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                config, new StringSerializer(), new ByteArraySerializer()));
+    }
+
+    // app.kafka.format — по умолчанию, app.kafka.formats."[topic]" — для отдельного топика
+    @Bean
+    public UserEventCodec userEventCodec(ObjectMapper objectMapper, Environment environment) {
+        Binder binder = Binder.get(environment);
+        EventFormat defaultFormat = binder.bind("app.kafka.format", EventFormat.class).orElse(EventFormat.JSON);
+        Map<String, EventFormat> topicFormats = binder
+                .bind("app.kafka.formats", Bindable.mapOf(String.class, EventFormat.class))
+                .orElse(Map.of());
+        return new UserEventCodec(objectMapper, defaultFormat, topicFormats);
+    }
+}
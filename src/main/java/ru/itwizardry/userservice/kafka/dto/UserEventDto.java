@@ -1,6 +1,18 @@
 package ru.itwizardry.userservice.kafka.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+// changes — только у UPDATED: изменившиеся поля и их новые значения
 public record UserEventDto(
         UserOperation operation,
-        String email
-) {}
+        String email,
+        Long id,
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        Map<String, Object> changes
+) {
+    public UserEventDto(UserOperation operation, String email, Long id) {
+        this(operation, email, id, null);
+    }
+}
@@ -0,0 +1,19 @@
+package ru.itwizardry.userservice.kafka.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.Map;
+
+// Бинарная (CBOR) схема события: позиционный массив [schemaVersion, operation, email, id, changes] без имён полей.
+// operation — ordinal UserOperation; новые поля только дописываются в конец с повышением schemaVersion.
+// v1 — [schemaVersion, operation, email]: недостающие хвостовые элементы читаются как null.
+@JsonFormat(shape = JsonFormat.Shape.ARRAY)
+@JsonPropertyOrder({"schemaVersion", "operation", "email", "id", "changes"})
+public record UserEventRecord(
+        int schemaVersion,
+        int operation,
+        String email,
+        Long id,
+        Map<String, Object> changes
+) {}
@@ -1,6 +1,8 @@
 package ru.itwizardry.userservice.kafka.dto;
 
+// Порядок констант — часть бинарного формата (UserEventRecord.operation): только дописывать в конец.
 public enum UserOperation {
     CREATED,
-    DELETED
-}
\ No newline at end of file
+    DELETED,
+    UPDATED
+}
@@ -0,0 +1,97 @@
+package ru.itwizardry.userservice.kafka.outbox;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itwizardry.userservice.domain.OutboxEvent;
+import ru.itwizardry.userservice.kafka.codec.UserEventCodec;
+import ru.itwizardry.userservice.repository.OutboxRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.outbox.enabled", havingValue = "true")
+public class OutboxRelay {
+
+    private final OutboxRepository outboxRepository;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.outbox.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    // сколько инстансов могут отправлять параллельно; менять только вместе с остановкой всех relay
+    @Value("${app.outbox.lanes:8}")
+    private int lanes;
+
+    @Scheduled(fixedDelayString = "${app.outbox.publish-rate-ms:1000}")
+    public void relay() {
+        for (int lane = 0; lane < lanes; lane++) {
+            int current = lane;
+            // каждая пачка — своя транзакция: полоса не держится дольше одной отправки
+            Integer relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch(current));
+            } while (relayed != null && relayed == batchSize);
+        }
+    }
+
+    private int relayBatch(int lane) {
+        // SKIP LOCKED по строкам не годится: другой инстанс взял бы следующее событие того же ключа
+        // и мог бы отправить его раньше. Полосу целиком держит один инстанс
+        if (!outboxRepository.tryLockLane(lane)) {
+            return 0;
+        }
+        List<OutboxEvent> batch = outboxRepository.claimBatch(lane, lanes, batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // отправляем всю пачку не дожидаясь ответов: продюсер сам соберёт записи в батчи
+        List<CompletableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            sends.add(kafkaTemplate.send(UserEventCodec.producerRecord(
+                    event.getTopic(), event.getMessageKey(), event.getPayload(), event.getContentType())));
+        }
+        kafkaTemplate.flush();
+
+        // удаляем только непрерывный префикс подтверждённых событий, чтобы не нарушить порядок
+        List<Long> sent = new ArrayList<>(batch.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sent.add(event.getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Outbox relay stopped at event [id={}, topic={}], will retry", event.getId(), event.getTopic(), e);
+                break;
+            }
+        }
+
+        if (!sent.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(sent);
+        }
+        log.debug("Outbox relay sent {} of {} claimed events in lane {}", sent.size(), batch.size(), lane);
+        return sent.size();
+    }
+}
@@ -0,0 +1,323 @@
+package ru.itwizardry.userservice.kafka.publisher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import ru.itwizardry.userservice.kafka.codec.UserEventCodec;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отправляет события из ограниченной очереди в отдельном потоке, чтобы поток запроса не ждал брокера.
+ * Если брокер недоступен или очередь переполнена (политика SPILL), события уходят в spill-файл;
+ * пока в файле есть хвост, новые события тоже пишутся туда — порядок сохраняется.
+ */
+@Slf4j
+@Component
+public class AsyncEventSender implements SmartLifecycle {
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final BlockingQueue<PendingEvent> queue;
+    private final EventSpillFile spill;
+    private final OverflowPolicy overflowPolicy;
+    private final Duration blockTimeout;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Duration retryBackoff;
+    private final boolean virtualThreads;
+
+    // очередь и spill-файл меняются согласованно: проверка «есть ли хвост» и постановка в очередь атомарны
+    private final ReentrantLock submitLock = new ReentrantLock();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter shed;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public AsyncEventSender(
+            KafkaTemplate<String, byte[]> kafkaTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.kafka.async.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.kafka.async.overflow:SPILL}") OverflowPolicy overflowPolicy,
+            @Value("${app.kafka.async.block-timeout:PT1S}") Duration blockTimeout,
+            @Value("${app.kafka.async.batch-size:500}") int batchSize,
+            @Value("${app.kafka.async.send-timeout:PT30S}") Duration sendTimeout,
+            @Value("${app.kafka.async.retry-backoff:PT5S}") Duration retryBackoff,
+            @Value("${app.kafka.async.spill-file:data/user-events.spill}") Path spillFile,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.spill = new EventSpillFile(spillFile, objectMapper);
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.retryBackoff = retryBackoff;
+        this.virtualThreads = virtualThreads;
+
+        Gauge.builder("user.events.queue.depth", queue, BlockingQueue::size)
+                .description("User events waiting in the in-memory send queue")
+                .register(meterRegistry);
+        Gauge.builder("user.events.spill.bytes", spill, EventSpillFile::backlogBytes)
+                .description("Bytes of user events in the spill file not yet delivered")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("user.events.in.flight", inFlight, AtomicInteger::get)
+                .description("User events handed to the Kafka producer and not yet acknowledged")
+                .register(meterRegistry);
+        this.shed = Counter.builder("user.events.shed")
+                .description("User events dropped because the send queue was full or the spill file failed")
+                .register(meterRegistry);
+    }
+
+    // Вызывается из afterCommit: изменение уже зафиксировано, поэтому исключение отсюда не выходит —
+    // клиент получил бы 500 на успешную запись, а его повтор — 409 или дубль
+    public void submit(PendingEvent event) {
+        submitLock.lock();
+        try {
+            // после stop() воркера нет и финальный сброс очереди уже прошёл — сразу на диск
+            if (!running || spill.hasBacklog()) {
+                spill(event);
+                return;
+            }
+            if (queue.offer(event)) {
+                return;
+            }
+            switch (overflowPolicy) {
+                case SPILL -> spill(event);
+                case SHED -> shed(event);
+                case BLOCK -> {
+                    // ждём под замком: иначе пока ждём, другой поток начнёт хвост в файле и порядок нарушится
+                    if (!queue.offer(event, blockTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                        log.warn("User event queue is still full after {}, spilling event to disk", blockTimeout);
+                        spill(event);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            spill(event);
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    private void spill(PendingEvent event) {
+        try {
+            spill.append(List.of(event));
+        } catch (RuntimeException e) {
+            log.error("Failed to spill user event [operation={}, topic={}]", event.operation(), event.topic(), e);
+            shed.increment();
+        }
+    }
+
+    private void shed(PendingEvent event) {
+        shed.increment();
+        log.warn("User event queue is full, event shed [operation={}, topic={}]", event.operation(), event.topic());
+    }
+
+    private void runLoop() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                // очередь старше хвоста в файле: сначала она, затем повтор spill
+                if (queue.isEmpty() && spill.hasBacklog()) {
+                    if (!replaySpill()) {
+                        Thread.sleep(retryBackoff.toMillis());
+                    }
+                    continue;
+                }
+
+                PendingEvent first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                int acked = sendInOrder(batch);
+                if (acked < batch.size()) {
+                    spillFrom(batch.subList(acked, batch.size()));
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("User event sender iteration failed", e);
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean replaySpill() {
+        List<EventSpillFile.Entry> entries = spill.read(batchSize);
+        if (entries.isEmpty()) {
+            // хвост есть, а прочитать нечего — не крутимся вхолостую, ждём как при недоступном брокере
+            log.warn("Spill file has {} pending bytes but no complete record", spill.backlogBytes());
+            return false;
+        }
+        List<PendingEvent> events = new ArrayList<>(entries.size());
+        for (EventSpillFile.Entry entry : entries) {
+            if (entry.event() != null) {
+                events.add(entry.event());
+            }
+        }
+
+        int acked = sendInOrder(events);
+        // подтверждённый префикс (и битые строки перед первым неотправленным) считаем доставленным
+        long committed = -1;
+        int delivered = 0;
+        for (EventSpillFile.Entry entry : entries) {
+            if (entry.event() != null) {
+                if (delivered == acked) {
+                    break;
+                }
+                delivered++;
+            }
+            committed = entry.endOffset();
+        }
+        if (committed >= 0) {
+            spill.commit(committed);
+        }
+        if (acked < events.size()) {
+            log.warn("Kafka still unavailable, {} spilled user events pending", events.size() - acked);
+            return false;
+        }
+        return true;
+    }
+
+    // возвращает длину подтверждённого брокером префикса пачки
+    private int sendInOrder(List<PendingEvent> batch) {
+        List<CompletableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(batch.size());
+        List<Timer.Sample> samples = new ArrayList<>(batch.size());
+        try {
+            for (PendingEvent event : batch) {
+                samples.add(Timer.start(meterRegistry));
+                inFlight.incrementAndGet();
+                sends.add(kafkaTemplate.send(UserEventCodec.producerRecord(
+                        event.topic(), event.key(), event.payload(), event.contentType())));
+            }
+        } catch (RuntimeException e) {
+            // send() сам упал, например, на max.block.ms без метаданных
+            inFlight.decrementAndGet();
+            samples.removeLast().stop(sendTimer(batch.get(sends.size()), "failure"));
+            log.warn("Kafka send failed synchronously", e);
+        }
+
+        int acked = 0;
+        boolean broken = false;
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        for (int i = 0; i < sends.size(); i++) {
+            PendingEvent event = batch.get(i);
+            String result = "success";
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (!broken) {
+                    acked++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = "failure";
+                broken = true;
+            } catch (ExecutionException | TimeoutException e) {
+                result = "failure";
+                if (!broken) {
+                    log.warn("Failed to send user event [operation={}, topic={}]", event.operation(), event.topic(), e);
+                }
+                broken = true;
+            } finally {
+                inFlight.decrementAndGet();
+                samples.get(i).stop(sendTimer(event, result));
+            }
+        }
+        return acked;
+    }
+
+    private void spillFrom(List<PendingEvent> unsent) {
+        submitLock.lock();
+        try {
+            // всё, что ещё в очереди, новее неотправленного — уходит в файл следом
+            List<PendingEvent> tail = new ArrayList<>(unsent);
+            queue.drainTo(tail);
+            if (!tail.isEmpty()) {
+                spill.append(tail);
+                log.warn("Spilled {} user events to disk", tail.size());
+            }
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    // только operation и result: email и id в теги не попадают, кардинальность ограничена
+    private Timer sendTimer(PendingEvent event, String result) {
+        return Timer.builder("user.events.send")
+                .description("Kafka send latency of user events, until broker ack")
+                .tag("operation", event.operation())
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Останавливается после graceful shutdown веб-сервера: запросы, завершившиеся за время ожидания,
+    // ещё застают воркер; события запоздавших уходят в spill-файл
+    @Override
+    public int getPhase() {
+        return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 1;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        worker = builder.name("user-event-sender").start(this::runLoop);
+    }
+
+    @Override
+    public void stop() {
+        submitLock.lock();
+        try {
+            running = false;
+        } finally {
+            submitLock.unlock();
+        }
+        if (worker != null) {
+            try {
+                worker.join(sendTimeout.toMillis() + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // не отправленное к остановке сохраняем на диск, следующий запуск дошлёт
+        spillFrom(List.of());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
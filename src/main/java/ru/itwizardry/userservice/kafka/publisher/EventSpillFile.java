@@ -0,0 +1,199 @@
+package ru.itwizardry.userservice.kafka.publisher;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only файл событий, которые не удалось отдать брокеру: одна JSON-строка на событие.
+ * Читается с позиции последнего подтверждённого события; когда всё отправлено — обрезается до нуля.
+ * Позиция сохраняется рядом в {@code <файл>.offset}. Доставка at-least-once: при падении между
+ * подтверждением брокера и записью позиции последняя пачка после рестарта уйдёт повторно.
+ */
+@Slf4j
+class EventSpillFile {
+
+    record Entry(PendingEvent event, long endOffset) {}
+
+    private final Path path;
+    private final Path offsetPath;
+    private final ObjectMapper objectMapper;
+
+    private long size;
+    private long replayedOffset;
+
+    EventSpillFile(Path path, ObjectMapper objectMapper) {
+        this.path = path;
+        this.offsetPath = path.resolveSibling(path.getFileName() + ".offset");
+        this.objectMapper = objectMapper;
+        try {
+            // хвост прошлого запуска — отправляется первым
+            this.size = Files.exists(path) ? truncateTornTail() : 0;
+            this.replayedOffset = Math.min(readOffset(), size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open spill file " + path, e);
+        }
+    }
+
+    // после падения посреди записи последняя строка может остаться без '\n': отрезаем её,
+    // иначе следующее событие склеится с ней в одну битую запись
+    private long truncateTornTail() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long end = fileSize;
+            while (end > 0) {
+                int chunk = (int) Math.min(buffer.capacity(), end);
+                buffer.clear().limit(chunk);
+                long start = end - chunk;
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                for (int i = chunk - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return truncate(channel, fileSize, start + i + 1);
+                    }
+                }
+                end = start;
+            }
+            return truncate(channel, fileSize, 0);
+        }
+    }
+
+    private long truncate(FileChannel channel, long fileSize, long validSize) throws IOException {
+        if (validSize < fileSize) {
+            log.warn("Dropping {} bytes of a torn record at the end of spill file {}", fileSize - validSize, path);
+            channel.truncate(validSize);
+        }
+        return validSize;
+    }
+
+    private long readOffset() throws IOException {
+        if (!Files.exists(offsetPath)) {
+            return 0;
+        }
+        String value = Files.readString(offsetPath, StandardCharsets.UTF_8).trim();
+        try {
+            return value.isEmpty() ? 0 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring corrupted spill offset file {}, replaying {} from the start", offsetPath, path);
+            return 0;
+        }
+    }
+
+    // запись во временный файл и атомарная замена: позиция либо старая, либо новая, но не обрывок
+    private void writeOffset(long offset) throws IOException {
+        Path tmp = offsetPath.resolveSibling(offsetPath.getFileName() + ".tmp");
+        Files.writeString(tmp, Long.toString(offset), StandardCharsets.UTF_8);
+        Files.move(tmp, offsetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    synchronized boolean hasBacklog() {
+        return size > replayedOffset;
+    }
+
+    synchronized long backlogBytes() {
+        return size - replayedOffset;
+    }
+
+    synchronized void append(List<PendingEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder(events.size() * 128);
+        for (PendingEvent event : events) {
+            try {
+                lines.append(objectMapper.writeValueAsString(event)).append('\n');
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize spilled event", e);
+            }
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        long start = size;
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                try {
+                    while (bytes.hasRemaining()) {
+                        size += channel.write(bytes);
+                    }
+                } catch (IOException e) {
+                    // недописанные строки не оставляем: откатываемся к последней целой записи
+                    channel.truncate(start);
+                    size = start;
+                    throw e;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to spill file " + path, e);
+        }
+    }
+
+    synchronized List<Entry> read(int max) {
+        List<Entry> entries = new ArrayList<>(max);
+        if (!hasBacklog()) {
+            return entries;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(replayedOffset);
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            long offset = replayedOffset;
+            String line;
+            while (entries.size() < max && (line = reader.readLine()) != null) {
+                offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (offset > size) {
+                    break; // строка дописывается прямо сейчас
+                }
+                try {
+                    entries.add(new Entry(objectMapper.readValue(line, PendingEvent.class), offset));
+                } catch (JsonProcessingException e) {
+                    // битая строка (например, обрыв записи при падении) — event == null, отправитель её пропустит
+                    log.error("Skipping corrupted spill record at offset {} in {}", offset, path, e);
+                    entries.add(new Entry(null, offset));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read spill file " + path, e);
+        }
+        return entries;
+    }
+
+    synchronized void commit(long offset) {
+        replayedOffset = offset;
+        try {
+            if (replayedOffset < size) {
+                writeOffset(replayedOffset);
+                return;
+            }
+            // сначала позиция, потом файл: упав между ними, повторим уже отправленное, но не пропустим новое
+            writeOffset(0);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            }
+            size = 0;
+            replayedOffset = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to commit spill file " + path, e);
+        }
+    }
+}
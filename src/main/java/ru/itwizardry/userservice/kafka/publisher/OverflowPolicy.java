@@ -0,0 +1,11 @@
+package ru.itwizardry.userservice.kafka.publisher;
+
+// Что делать, когда очередь отправки заполнена
+public enum OverflowPolicy {
+    // ждать свободного места не дольше app.kafka.async.block-timeout
+    BLOCK,
+    // отбросить событие и посчитать в user.events.shed
+    SHED,
+    // дописать в spill-файл, он будет отправлен по порядку позже
+    SPILL
+}
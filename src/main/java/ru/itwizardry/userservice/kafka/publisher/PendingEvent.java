@@ -0,0 +1,10 @@
+package ru.itwizardry.userservice.kafka.publisher;
+
+// payload — уже закодированное событие (JSON или CBOR), contentType уходит в заголовок записи
+public record PendingEvent(
+        String operation,
+        String topic,
+        String key,
+        byte[] payload,
+        String contentType
+) {}
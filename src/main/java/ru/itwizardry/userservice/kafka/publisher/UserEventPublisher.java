@@ -1,59 +1,82 @@
 package ru.itwizardry.userservice.kafka.publisher;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.itwizardry.userservice.domain.OutboxEvent;
+import ru.itwizardry.userservice.kafka.codec.EventFormat;
+import ru.itwizardry.userservice.kafka.codec.UserEventCodec;
 import ru.itwizardry.userservice.kafka.dto.UserEventDto;
 import ru.itwizardry.userservice.kafka.dto.UserOperation;
+import ru.itwizardry.userservice.repository.OutboxRepository;
+
+import java.util.Map;
 
 import static ru.itwizardry.userservice.kafka.dto.UserOperation.CREATED;
 import static ru.itwizardry.userservice.kafka.dto.UserOperation.DELETED;
+import static ru.itwizardry.userservice.kafka.dto.UserOperation.UPDATED;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class UserEventPublisher {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final AsyncEventSender asyncEventSender;
+    private final UserEventCodec userEventCodec;
+    private final OutboxRepository outboxRepository;
 
     @Value("${app.kafka.topic}")
     private String topic;
 
-    public void publishUserCreated(String email) {
-        publish(CREATED, email);
+    @Value("${app.outbox.enabled:false}")
+    private boolean outboxEnabled;
+
+    public void publishUserCreated(long id, String email) {
+        publish(new UserEventDto(CREATED, email, id));
     }
 
-    public void publishUserDeleted(String email) {
-        publish(DELETED, email);
+    public void publishUserUpdated(long id, String email, Map<String, Object> changes) {
+        publish(new UserEventDto(UPDATED, email, id, changes));
     }
 
-    private void publish(UserOperation operation, String email) {
-        UserEventDto event = new UserEventDto(operation, email);
+    public void publishUserDeleted(long id, String email) {
+        publish(new UserEventDto(DELETED, email, id));
+    }
 
-        final String payload;
-        try {
-            payload = objectMapper.writeValueAsString(event);
-        } catch (JsonProcessingException e) {
-            throw new IllegalStateException("Failed to serialize UserEventDto to JSON", e);
+    // Ключ — id, а не email: смена email не разносит историю пользователя по разным партициям
+    private void publish(UserEventDto event) {
+        UserOperation operation = event.operation();
+        String key = Long.toString(event.id());
+        EventFormat format = userEventCodec.formatFor(topic);
+        byte[] payload = userEventCodec.encode(event, format);
+
+        if (outboxEnabled) {
+            // в транзакции вызывающего: событие фиксируется вместе с изменением users, в Kafka его отправит OutboxRelay
+            outboxRepository.save(OutboxEvent.builder()
+                    .topic(topic)
+                    .messageKey(key)
+                    .payload(payload)
+                    .contentType(format.contentType())
+                    .build());
+            log.debug("User event stored in outbox [operation={}, id={}, topic={}]", operation, key, topic);
+            return;
         }
 
-        log.debug("Publishing user event [operation={}, email={}, topic={}]", operation, email, topic);
-
-        kafkaTemplate.send(topic, email, payload)
-                .whenComplete((result, ex) -> {
-                    if (ex != null) {
-                        log.error("Failed to send user event [operation={}, email={}, topic={}]",
-                                operation, email, topic, ex);
-                        return;
-                    }
-                    var meta = result.getRecordMetadata();
-                    log.info("User event sent [operation={}, email={}, topic={}, partition={}, offset={}]",
-                            operation, email, topic, meta.partition(), meta.offset());
-                });
+        log.debug("Queueing user event [operation={}, id={}, topic={}]", operation, key, topic);
+        PendingEvent pending = new PendingEvent(operation.name(), topic, key, payload, format.contentType());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            asyncEventSender.submit(pending);
+            return;
+        }
+        // в очередь — только после коммита: откатившееся изменение не должно породить событие
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                asyncEventSender.submit(pending);
+            }
+        });
     }
 }
@@ -9,20 +9,42 @@ import ru.itwizardry.userservice.dto.UserCreateRequest;
 import ru.itwizardry.userservice.dto.UserDto;
 import ru.itwizardry.userservice.dto.UserUpdateRequest;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.ERROR)
 public interface UserMapper {
 
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "deletedAt", ignore = true)
     User toEntity(UserCreateRequest request);
 
     UserDto toDto(User user);
 
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "deletedAt", ignore = true)
     void updateEntity(@MappingTarget User user, UserUpdateRequest request);
 
     List<UserDto> toDtoList(List<User> users);
+
+    // что поменяет updateEntity: имя поля -> новое значение, для события UPDATED
+    default Map<String, Object> changedFields(User user, UserUpdateRequest request) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if (!Objects.equals(user.getName(), request.name())) {
+            changes.put("name", request.name());
+        }
+        if (!Objects.equals(user.getEmail(), request.email())) {
+            changes.put("email", request.email());
+        }
+        if (user.getAge() != request.age()) {
+            changes.put("age", request.age());
+        }
+        return changes;
+    }
 }
@@ -0,0 +1,54 @@
+package ru.itwizardry.userservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.itwizardry.userservice.domain.IdempotencyKey;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    // ON CONFLICT: из двух одновременных запросов с одним ключом выполняться будет только один
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, request_hash, created_at, expires_at) "
+            + "VALUES (:key, :requestHash, :now, :expiresAt) ON CONFLICT (idempotency_key) DO NOTHING",
+            nativeQuery = true)
+    int tryClaim(@Param("key") String key,
+                 @Param("requestHash") String requestHash,
+                 @Param("now") LocalDateTime now,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+
+    // захват «зависшего» ключа: инстанс, начавший запрос, упал и не дописал ответ
+    @Modifying
+    @Query("update IdempotencyKey k set k.createdAt = :now, k.expiresAt = :expiresAt "
+            + "where k.key = :key and k.status is null and k.createdAt < :staleBefore")
+    int takeOverStale(@Param("key") String key,
+                      @Param("now") LocalDateTime now,
+                      @Param("expiresAt") LocalDateTime expiresAt,
+                      @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying
+    @Query("update IdempotencyKey k set k.status = :status, k.location = :location, "
+            + "k.contentType = :contentType, k.etag = :etag, k.vary = :vary, k.body = :body "
+            + "where k.key = :key and k.status is null")
+    int complete(@Param("key") String key,
+                 @Param("status") int status,
+                 @Param("location") String location,
+                 @Param("contentType") String contentType,
+                 @Param("etag") String etag,
+                 @Param("vary") String vary,
+                 @Param("body") byte[] body);
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.key = :key and k.status is null")
+    int release(@Param("key") String key);
+
+    // порциями: короткие транзакции и блокировки даже при большом хвосте просроченных ключей
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE idempotency_key IN "
+            + "(SELECT idempotency_key FROM idempotency_keys WHERE expires_at < :now LIMIT :limit)",
+            nativeQuery = true)
+    int purgeExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
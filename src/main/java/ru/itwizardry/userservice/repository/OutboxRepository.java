@@ -0,0 +1,21 @@
+package ru.itwizardry.userservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.itwizardry.userservice.domain.OutboxEvent;
+
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // полоса — hash(message_key) % lanes: события одного ключа всегда в одной полосе.
+    // Блокировка до конца транзакции, не ждёт: занятую другим инстансом полосу просто пропускаем
+    @Query(value = "SELECT pg_try_advisory_xact_lock(hashtext('outbox'), :lane)", nativeQuery = true)
+    boolean tryLockLane(@Param("lane") int lane);
+
+    // только под tryLockLane: полосу разбирает один инстанс, поэтому ключ отправляется строго по id
+    @Query(value = "SELECT * FROM outbox WHERE mod(hashtext(message_key) & 2147483647, :lanes) = :lane "
+            + "ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<OutboxEvent> claimBatch(@Param("lane") int lane, @Param("lanes") int lanes, @Param("limit") int limit);
+}
@@ -0,0 +1,29 @@
+package ru.itwizardry.userservice.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.itwizardry.userservice.domain.UserChange;
+
+import java.util.List;
+
+public interface UserChangeRepository extends JpaRepository<UserChange, Long> {
+
+    // Текущее состояние пользователя вместе с изменением — одним запросом по индексу seq.
+    // before — граница завершённых транзакций, см. UserChangeLog
+    @Query("""
+            SELECT new ru.itwizardry.userservice.repository.UserChangeRow(c.seq, c.userId, u)
+            FROM UserChange c LEFT JOIN User u ON u.id = c.userId AND c.deleted = false
+            WHERE c.seq > :since AND c.seq < :before
+            ORDER BY c.seq
+            """)
+    List<UserChangeRow> findChangesAfter(@Param("since") long since, @Param("before") long before, Limit limit);
+
+    @Query("SELECT COALESCE(MAX(c.seq), 0) FROM UserChange c WHERE c.seq < :before")
+    long findLastSeq(@Param("before") long before);
+
+    // xid самой старой незавершённой транзакции; на реплике — по её снимку
+    @Query(value = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint", nativeQuery = true)
+    long findOldestRunningXid();
+}
@@ -0,0 +1,7 @@
+package ru.itwizardry.userservice.repository;
+
+import ru.itwizardry.userservice.domain.User;
+
+// user == null — пользователь удалён
+public record UserChangeRow(long seq, Long userId, User user) {
+}
@@ -0,0 +1,66 @@
+package ru.itwizardry.userservice.repository;
+
+import ru.itwizardry.userservice.domain.User;
+import ru.itwizardry.userservice.dto.UserView;
+import ru.itwizardry.userservice.exception.InvalidQueryParameterException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Locale;
+
+// Для сортировки по id курсор — просто id; для остальных — base64url("значение,id")
+public record UserCursor(Object key, long id) {
+
+    public static String encode(UserSort sort, User last) {
+        Object key = switch (sort.field()) {
+            case ID -> null;
+            case AGE -> last.getAge();
+            case NAME -> last.getName();
+            case CREATED_AT -> last.getCreatedAt();
+        };
+        return encode(key, last.getId());
+    }
+
+    public static String encode(UserSort sort, UserView last) {
+        Object key = switch (sort.field()) {
+            case ID -> null;
+            case AGE -> last.age();
+            case NAME -> last.name();
+            case CREATED_AT -> last.createdAt();
+        };
+        return encode(key, last.id());
+    }
+
+    private static String encode(Object key, long id) {
+        if (key == null) {
+            return String.valueOf(id);
+        }
+        // имя сравнивается через lower(name) — в курсоре тоже нижний регистр
+        String value = (key instanceof String name) ? name.toLowerCase(Locale.ROOT) : key.toString();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((value + "," + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static UserCursor decode(UserSort sort, String cursor) {
+        try {
+            if (sort.field() == UserSort.Field.ID) {
+                return new UserCursor(null, Long.parseLong(cursor));
+            }
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(',');
+            String key = raw.substring(0, separator);
+            long id = Long.parseLong(raw.substring(separator + 1));
+            Object value = switch (sort.field()) {
+                case ID -> null;
+                case AGE -> Integer.valueOf(key);
+                case NAME -> key;
+                case CREATED_AT -> LocalDateTime.parse(key);
+            };
+            return new UserCursor(value, id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidQueryParameterException("after", "Malformed cursor for sort " + sort.field());
+        }
+    }
+}
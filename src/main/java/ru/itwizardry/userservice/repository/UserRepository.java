@@ -1,21 +1,53 @@
 package ru.itwizardry.userservice.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import ru.itwizardry.userservice.domain.User;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User>, UserViewRepository {
 
     Optional<User> findByEmail(String email);
 
-    List<User> findAllByAge(int age);
+    List<User> findAllByEmailIn(Collection<String> emails);
 
+    // Курсор на стороне Postgres: строки приходят порциями по fetchSize, а не всей таблицей.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<User> streamByIdGreaterThanOrderByIdAsc(long after);
+
+    // только колонка email, без сущностей в persistence context — для построения EmailBloomFilter
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.email FROM User u")
+    Stream<String> streamAllEmails();
+
+    // Один round trip: отметка об удалении и email для события DELETED в одном statement, без предварительного SELECT.
+    // Без @Modifying: RETURNING отдаёт result set, executeUpdate на нём упадёт.
+    @Query(value = "UPDATE users SET deleted_at = now(), version = version + 1 "
+            + "WHERE id = :id AND deleted_at IS NULL RETURNING email", nativeQuery = true)
+    Optional<String> softDeleteByIdReturningEmail(@Param("id") long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.deletedAt = :now, u.version = u.version + 1 WHERE u.id IN :ids")
+    int softDeleteAllByIdIn(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // порция для UserPurger: SKIP LOCKED — два инстанса не ждут друг друга на одних строках
     @Modifying
-    @Query("delete from User u where u.id = :id")
-    int deleteByIdReturningCount(@Param("id") long id);
+    @Query(value = "DELETE FROM users WHERE id IN ("
+            + "SELECT id FROM users WHERE deleted_at < :before ORDER BY deleted_at LIMIT :limit FOR UPDATE SKIP LOCKED)",
+            nativeQuery = true)
+    int purgeDeleted(@Param("before") LocalDateTime before, @Param("limit") int limit);
 }
@@ -0,0 +1,61 @@
+package ru.itwizardry.userservice.repository;
+
+import org.springframework.data.domain.Sort;
+import ru.itwizardry.userservice.exception.InvalidQueryParameterException;
+
+import java.util.Arrays;
+
+public record UserSort(Field field, boolean descending) {
+
+    public static final UserSort DEFAULT = new UserSort(Field.ID, false);
+
+    public enum Field {
+        ID("id"),
+        AGE("age"),
+        NAME("name"),
+        CREATED_AT("createdAt");
+
+        private final String property;
+
+        Field(String property) {
+            this.property = property;
+        }
+
+        public String property() {
+            return property;
+        }
+    }
+
+    public static UserSort parse(String value) {
+        if (value == null || value.isBlank()) {
+            return DEFAULT;
+        }
+        String[] parts = value.split(",", 2);
+        String property = parts[0].trim();
+        Field field = Arrays.stream(Field.values())
+                .filter(f -> f.property.equalsIgnoreCase(property))
+                .findFirst()
+                .orElseThrow(() -> new InvalidQueryParameterException("sort", "Unsupported sort property: " + property));
+
+        if (parts.length == 1 || "asc".equalsIgnoreCase(parts[1].trim())) {
+            return new UserSort(field, false);
+        }
+        if ("desc".equalsIgnoreCase(parts[1].trim())) {
+            return new UserSort(field, true);
+        }
+        throw new InvalidQueryParameterException("sort", "Direction must be asc or desc");
+    }
+
+    // id всегда добивает порядок: ключ keyset-курсора (значение, id) уникален
+    public Sort toSort() {
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort.Order primary = new Sort.Order(direction, field.property);
+        if (field == Field.ID) {
+            return Sort.by(primary);
+        }
+        if (field == Field.NAME) {
+            primary = primary.ignoreCase();
+        }
+        return Sort.by(primary, new Sort.Order(direction, Field.ID.property));
+    }
+}
@@ -0,0 +1,78 @@
+package ru.itwizardry.userservice.repository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+import ru.itwizardry.userservice.domain.User;
+import ru.itwizardry.userservice.dto.UserQuery;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Предикаты подобраны под индексы из 004-users-filter-indexes.sql
+public final class UserSpecifications {
+
+    private UserSpecifications() {}
+
+    public static Specification<User> matching(UserQuery filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            Path<Integer> age = root.get("age");
+            Path<LocalDateTime> createdAt = root.get("createdAt");
+
+            if (filter.age() != null) {
+                predicates.add(cb.equal(age, filter.age()));
+            }
+            if (filter.minAge() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(age, filter.minAge()));
+            }
+            if (filter.maxAge() != null) {
+                predicates.add(cb.lessThanOrEqualTo(age, filter.maxAge()));
+            }
+            if (filter.namePrefix() != null && !filter.namePrefix().isBlank()) {
+                // lower(name) LIKE 'abc%' идёт по индексу с text_pattern_ops
+                String prefix = escapeLike(filter.namePrefix().toLowerCase(Locale.ROOT));
+                predicates.add(cb.like(cb.lower(root.get("name")), prefix + "%", '\\'));
+            }
+            if (filter.createdFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(createdAt, filter.createdFrom()));
+            }
+            if (filter.createdTo() != null) {
+                predicates.add(cb.lessThan(createdAt, filter.createdTo()));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    public static Specification<User> after(UserSort sort, UserCursor cursor) {
+        return (root, query, cb) -> {
+            Path<Long> id = root.get("id");
+            Predicate idBeyond = sort.descending()
+                    ? cb.lessThan(id, cursor.id())
+                    : cb.greaterThan(id, cursor.id());
+
+            return switch (sort.field()) {
+                case ID -> idBeyond;
+                case AGE -> keyset(cb, root.get("age"), (Integer) cursor.key(), sort.descending(), idBeyond);
+                case NAME -> keyset(cb, cb.lower(root.get("name")), (String) cursor.key(), sort.descending(), idBeyond);
+                case CREATED_AT -> keyset(cb, root.get("createdAt"), (LocalDateTime) cursor.key(), sort.descending(), idBeyond);
+            };
+        };
+    }
+
+    // (key, id) > (value, lastId) в форме, понятной Criteria API
+    private static <Y extends Comparable<? super Y>> Predicate keyset(
+            CriteriaBuilder cb, Expression<Y> key, Y value, boolean descending, Predicate idBeyond
+    ) {
+        Predicate beyond = descending ? cb.lessThan(key, value) : cb.greaterThan(key, value);
+        return cb.or(beyond, cb.and(cb.equal(key, value), idBeyond));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,15 @@
+package ru.itwizardry.userservice.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import ru.itwizardry.userservice.domain.User;
+import ru.itwizardry.userservice.dto.UserField;
+import ru.itwizardry.userservice.dto.UserView;
+
+import java.util.List;
+import java.util.Set;
+
+public interface UserViewRepository {
+
+    // Проекция без сущностей: SELECT только запрошенных колонок (+ id, version и ключ сортировки для курсора)
+    List<UserView> findViews(Specification<User> spec, UserSort sort, Set<UserField> fields, int limit);
+}
@@ -0,0 +1,74 @@
+package ru.itwizardry.userservice.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import ru.itwizardry.userservice.domain.User;
+import ru.itwizardry.userservice.dto.UserField;
+import ru.itwizardry.userservice.dto.UserView;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@RequiredArgsConstructor
+class UserViewRepositoryImpl implements UserViewRepository {
+
+    private static final String ID = "id";
+    private static final String VERSION = "version";
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<UserView> findViews(Specification<User> spec, UserSort sort, Set<UserField> fields, int limit) {
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add(ID);
+        columns.add(VERSION);
+        columns.add(sort.field().property());
+        fields.forEach(field -> columns.add(field.property()));
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<User> root = query.from(User.class);
+
+        List<Selection<?>> selections = columns.stream()
+                .<Selection<?>>map(column -> root.get(column).alias(column))
+                .toList();
+        query.multiselect(selections);
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort.toSort(), root, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultStream()
+                .map(tuple -> toView(tuple, columns))
+                .toList();
+    }
+
+    private static UserView toView(Tuple tuple, Set<String> columns) {
+        return new UserView(
+                tuple.get(ID, Long.class),
+                value(tuple, columns, UserField.NAME, String.class),
+                value(tuple, columns, UserField.EMAIL, String.class),
+                value(tuple, columns, UserField.AGE, Integer.class),
+                value(tuple, columns, UserField.CREATED_AT, LocalDateTime.class),
+                tuple.get(VERSION, Long.class)
+        );
+    }
+
+    private static <T> T value(Tuple tuple, Set<String> columns, UserField field, Class<T> type) {
+        return columns.contains(field.property()) ? tuple.get(field.property(), type) : null;
+    }
+}
@@ -0,0 +1,95 @@
+package ru.itwizardry.userservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import ru.itwizardry.userservice.api.ReadYourWritesFilter;
+import ru.itwizardry.userservice.dto.UserCreateRequest;
+import ru.itwizardry.userservice.dto.UserDto;
+import ru.itwizardry.userservice.dto.UserField;
+import ru.itwizardry.userservice.dto.UserPage;
+import ru.itwizardry.userservice.dto.UserQuery;
+import ru.itwizardry.userservice.dto.UserUpdateRequest;
+import ru.itwizardry.userservice.dto.UserViewPage;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Объединяет одновременные одинаковые чтения (getUserById, findUsers) в один запрос к базе.
+ * Стоит перед прокси UserServiceImpl, поэтому транзакцию и соединение берёт только лидер.
+ * Запросы, закреплённые за primary (read-your-writes), не объединяются: чужое чтение
+ * могло начаться раньше их собственной записи.
+ */
+@Primary
+@Service
+@ConditionalOnProperty(name = "app.single-flight.enabled", havingValue = "true", matchIfMissing = true)
+public class CoalescingUserService implements UserService {
+
+    private final UserServiceImpl delegate;
+    private final SingleFlight<Long, UserDto> byId;
+    private final SingleFlight<PageKey, UserPage> pages;
+
+    public CoalescingUserService(
+            UserServiceImpl delegate,
+            MeterRegistry meterRegistry,
+            @Value("${app.single-flight.max-in-flight:10000}") int maxInFlight,
+            @Value("${app.single-flight.timeout:PT2S}") Duration timeout
+    ) {
+        this.delegate = delegate;
+        this.byId = new SingleFlight<>("getUserById", maxInFlight, timeout, meterRegistry);
+        this.pages = new SingleFlight<>("findUsers", maxInFlight, timeout, meterRegistry);
+    }
+
+    @Override
+    public UserDto getUserById(Long id) {
+        if (ReadYourWritesFilter.isPinnedToPrimary()) {
+            return delegate.getUserById(id);
+        }
+        return byId.load(id, () -> delegate.getUserById(id));
+    }
+
+    @Override
+    public UserPage findUsers(UserQuery query, String after, int limit) {
+        if (ReadYourWritesFilter.isPinnedToPrimary()) {
+            return delegate.findUsers(query, after, limit);
+        }
+        return pages.load(new PageKey(query, after, limit), () -> delegate.findUsers(query, after, limit));
+    }
+
+    @Override
+    public UserDto createUser(UserCreateRequest request) {
+        return delegate.createUser(request);
+    }
+
+    @Override
+    public UserDto updateUser(Long id, UserUpdateRequest request, Long expectedVersion) {
+        return delegate.updateUser(id, request, expectedVersion);
+    }
+
+    @Override
+    public void deleteUser(Long id) {
+        delegate.deleteUser(id);
+    }
+
+    @Override
+    public Optional<UserDto> findByEmail(String email) {
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public UserViewPage findUserViews(UserQuery query, String after, int limit, Set<UserField> fields) {
+        return delegate.findUserViews(query, after, limit, fields);
+    }
+
+    @Override
+    public void streamUsers(long after, Consumer<UserDto> sink) {
+        delegate.streamUsers(after, sink);
+    }
+
+    private record PageKey(UserQuery query, String after, int limit) {}
+}
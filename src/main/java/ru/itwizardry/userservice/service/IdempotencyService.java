@@ -0,0 +1,26 @@
+package ru.itwizardry.userservice.service;
+
+import ru.itwizardry.userservice.dto.IdempotentResponse;
+
+public interface IdempotencyService {
+
+    Claim claim(String key, String requestHash);
+
+    void complete(String key, IdempotentResponse response);
+
+    void release(String key);
+
+    sealed interface Claim {
+
+        // ключ наш: выполняем запрос и сохраняем ответ
+        record Acquired() implements Claim {}
+
+        record Completed(IdempotentResponse response) implements Claim {}
+
+        // тот же ключ сейчас выполняется другим запросом
+        record InProgress() implements Claim {}
+
+        // ключ уже использован с другим телом или другим endpoint'ом
+        record Mismatch() implements Claim {}
+    }
+}
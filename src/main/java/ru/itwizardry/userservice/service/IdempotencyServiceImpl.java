@@ -0,0 +1,136 @@
+package ru.itwizardry.userservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itwizardry.userservice.domain.IdempotencyKey;
+import ru.itwizardry.userservice.dto.IdempotentResponse;
+import ru.itwizardry.userservice.repository.IdempotencyKeyRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private final IdempotencyKeyRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Duration lockTimeout;
+
+    // только завершённые ответы: они неизменяемы, поэтому локальная копия безопасна и при нескольких инстансах
+    private final Cache<String, IdempotentResponse> completed;
+
+    public IdempotencyServiceImpl(
+            IdempotencyKeyRepository repository,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.idempotency.ttl:PT24H}") Duration ttl,
+            @Value("${app.idempotency.lock-timeout:PT1M}") Duration lockTimeout,
+            @Value("${app.idempotency.cache-size:10000}") long cacheSize
+    ) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = ttl;
+        this.lockTimeout = lockTimeout;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "idempotencyKeys");
+    }
+
+    @Override
+    @Transactional
+    public Claim claim(String key, String requestHash) {
+        IdempotentResponse cached = completed.getIfPresent(key);
+        if (cached != null) {
+            return matches(cached.requestHash(), requestHash) ? new Claim.Completed(cached) : new Claim.Mismatch();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (repository.tryClaim(key, requestHash, now, now.plus(ttl)) == 1) {
+            return new Claim.Acquired();
+        }
+
+        Optional<IdempotencyKey> existing = repository.findById(key);
+        if (existing.isEmpty()) {
+            // ключ успели освободить или вычистить между INSERT и SELECT — клиент просто повторит
+            return new Claim.InProgress();
+        }
+        IdempotencyKey record = existing.get();
+        if (!matches(record.getRequestHash(), requestHash)) {
+            return new Claim.Mismatch();
+        }
+        if (record.isCompleted()) {
+            IdempotentResponse response = toResponse(record);
+            completed.put(key, response);
+            return new Claim.Completed(response);
+        }
+        if (repository.takeOverStale(key, now, now.plus(ttl), now.minus(lockTimeout)) == 1) {
+            log.warn("Taking over stale idempotency key [key={}]", key);
+            return new Claim.Acquired();
+        }
+        return new Claim.InProgress();
+    }
+
+    @Override
+    @Transactional
+    public void complete(String key, IdempotentResponse response) {
+        repository.complete(key, response.status(), response.location(), response.contentType(),
+                response.etag(), response.vary(), response.body());
+        completed.put(key, response);
+    }
+
+    @Override
+    @Transactional
+    public void release(String key) {
+        repository.release(key);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.idempotency.cleanup-rate-ms:600000}",
+            fixedDelayString = "${app.idempotency.cleanup-rate-ms:600000}"
+    )
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        Integer purged;
+        do {
+            purged = transactionTemplate.execute(status -> repository.purgeExpired(now, PURGE_BATCH_SIZE));
+            total += (purged == null) ? 0 : purged;
+        } while (purged != null && purged == PURGE_BATCH_SIZE);
+
+        if (total > 0) {
+            log.debug("Purged expired idempotency keys [count={}]", total);
+        }
+    }
+
+    private static boolean matches(String stored, String requestHash) {
+        return stored.equals(requestHash);
+    }
+
+    private static IdempotentResponse toResponse(IdempotencyKey record) {
+        return new IdempotentResponse(
+                record.getRequestHash(),
+                record.getStatus(),
+                record.getLocation(),
+                record.getContentType(),
+                record.getEtag(),
+                record.getVary(),
+                record.getBody()
+        );
+    }
+}
@@ -0,0 +1,105 @@
+package ru.itwizardry.userservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight: одновременные вызовы с одним ключом делят один вызов loader'а и его результат.
+ * Первый (лидер) загружает в своём потоке, остальные ждут его не дольше timeout, потом загружают сами.
+ * Ошибка лидера достаётся всем, кто его ждал. Ключ убирается из карты до публикации результата,
+ * поэтому пришедший после завершения вызов всегда идёт в базу заново — это не кэш.
+ * Ключей в полёте не больше maxInFlight: сверх лимита вызов идёт мимо, без объединения.
+ */
+final class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final int maxInFlight;
+    private final long timeoutNanos;
+    private final Counter leaders;
+    private final Counter shared;
+    private final Counter bypassed;
+    private final Counter timeouts;
+
+    SingleFlight(String name, int maxInFlight, Duration timeout, MeterRegistry registry) {
+        this.maxInFlight = maxInFlight;
+        this.timeoutNanos = timeout.toNanos();
+        this.leaders = calls(registry, name, "leader");
+        this.shared = calls(registry, name, "shared");
+        this.bypassed = calls(registry, name, "bypassed");
+        this.timeouts = Counter.builder("user.single.flight.timeouts")
+                .description("Callers that stopped waiting for a shared call and loaded on their own")
+                .tag("name", name)
+                .register(registry);
+        Gauge.builder("user.single.flight.in.flight", inFlight, Map::size)
+                .description("Keys with a call in flight")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    V load(K key, Supplier<V> loader) {
+        // size() приблизительный — лимит мягкий, этого достаточно, чтобы карта не росла без границ
+        if (inFlight.size() >= maxInFlight) {
+            bypassed.increment();
+            return loader.get();
+        }
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            shared.increment();
+            return await(running, loader);
+        }
+
+        leaders.increment();
+        V value;
+        try {
+            value = loader.get();
+        } catch (Throwable e) {
+            inFlight.remove(key, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, own);
+        own.complete(value);
+        return value;
+    }
+
+    private V await(CompletableFuture<V> running, Supplier<V> loader) {
+        try {
+            return running.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // лидер завис — не ждём его дальше, идём в базу сами
+            timeouts.increment();
+            return loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shared call", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static Counter calls(MeterRegistry registry, String name, String result) {
+        return Counter.builder("user.single.flight.calls")
+                .description("Reads by whether they ran the query, shared another caller's or skipped coalescing")
+                .tag("name", name)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,14 @@
+package ru.itwizardry.userservice.service;
+
+import ru.itwizardry.userservice.dto.UserBatchItem;
+import ru.itwizardry.userservice.dto.UserBatchResponse;
+
+import java.util.Iterator;
+import java.util.List;
+
+public interface UserBatchService {
+    UserBatchResponse process(List<UserBatchItem> items);
+
+    // элементы читаются по мере обработки: в памяти только текущая пачка и результаты
+    UserBatchResponse process(Iterator<UserBatchItem> items);
+}
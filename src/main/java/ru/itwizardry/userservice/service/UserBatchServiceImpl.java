@@ -0,0 +1,255 @@
+package ru.itwizardry.userservice.service;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itwizardry.userservice.cache.EmailBloomFilter;
+import ru.itwizardry.userservice.cache.UserChangedEvent;
+import ru.itwizardry.userservice.domain.User;
+import ru.itwizardry.userservice.dto.UserBatchItem;
+import ru.itwizardry.userservice.dto.UserBatchItemResult;
+import ru.itwizardry.userservice.dto.UserBatchResponse;
+import ru.itwizardry.userservice.dto.UserCreateRequest;
+import ru.itwizardry.userservice.dto.UserUpdateRequest;
+import ru.itwizardry.userservice.exception.BatchTooLargeException;
+import ru.itwizardry.userservice.kafka.publisher.UserEventPublisher;
+import ru.itwizardry.userservice.mapper.UserMapper;
+import ru.itwizardry.userservice.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static ru.itwizardry.userservice.dto.UserBatchAction.CREATE;
+import static ru.itwizardry.userservice.dto.UserBatchAction.DELETE;
+import static ru.itwizardry.userservice.dto.UserBatchItemResult.Status.*;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Timed(value = "user.service", histogram = true)
+public class UserBatchServiceImpl implements UserBatchService {
+
+    private static final String EMAIL_ALREADY_EXISTS = "EMAIL_ALREADY_EXISTS";
+    private static final String USER_NOT_FOUND = "USER_NOT_FOUND";
+    private static final String VALIDATION_ERROR = "VALIDATION_ERROR";
+    private static final String CONCURRENT_MODIFICATION = "CONCURRENT_MODIFICATION";
+
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final UserEventPublisher userEventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final UserChangeLog userChangeLog;
+    private final EmailBloomFilter emailBloomFilter;
+
+    @Value("${app.batch.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.batch.max-items:10000}")
+    private int maxItems;
+
+    @Override
+    public UserBatchResponse process(List<UserBatchItem> items) {
+        if (items.size() > maxItems) {
+            throw new BatchTooLargeException(maxItems, 0);
+        }
+        return process(items.iterator());
+    }
+
+    @Override
+    public UserBatchResponse process(Iterator<UserBatchItem> items) {
+        List<UserBatchItemResult> results = new ArrayList<>();
+        // индекс в запросе -> элемент; пачка живёт до применения, остальное тело ещё не прочитано
+        Map<Integer, UserBatchItem> chunk = new LinkedHashMap<>(chunkSize * 2);
+        int processed = 0;
+
+        for (int i = 0; items.hasNext(); i++) {
+            if (i == maxItems) {
+                throw new BatchTooLargeException(maxItems, processed);
+            }
+            UserBatchItem item = items.next();
+            results.add(null);
+            String violation = validate(item);
+            if (violation != null) {
+                results.set(i, UserBatchItemResult.failed(i, VALIDATION_ERROR, violation));
+                continue;
+            }
+            chunk.put(i, item);
+            if (chunk.size() == chunkSize) {
+                applyChunk(chunk, results);
+                chunk.clear();
+                processed = i + 1;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            applyChunk(chunk, results);
+        }
+
+        return UserBatchResponse.of(results);
+    }
+
+    private void applyChunk(Map<Integer, UserBatchItem> chunk, List<UserBatchItemResult> results) {
+        try {
+            transactionTemplate.execute(status -> applyInTransaction(chunk))
+                    .forEach(results::set);
+        } catch (DataIntegrityViolationException | OptimisticLockingFailureException ex) {
+            // email заняли или строку изменили параллельно между чтением и записью: пачка откатилась,
+            // повторяем поштучно, чтобы упал только конфликтный элемент
+            log.debug("Batch chunk of {} items hit a constraint, retrying item by item", chunk.size());
+            chunk.forEach((index, item) -> {
+                try {
+                    transactionTemplate.execute(status -> applyInTransaction(Map.of(index, item)))
+                            .forEach(results::set);
+                } catch (DataIntegrityViolationException e) {
+                    results.set(index, emailExists(index, item.user().email()));
+                } catch (OptimisticLockingFailureException e) {
+                    results.set(index, UserBatchItemResult.failed(index, CONCURRENT_MODIFICATION,
+                            "User with id " + item.id() + " was modified concurrently"));
+                }
+            });
+        }
+    }
+
+    private Map<Integer, UserBatchItemResult> applyInTransaction(Map<Integer, UserBatchItem> chunk) {
+        Map<Integer, UserBatchItemResult> results = new HashMap<>(chunk.size() * 2);
+
+        Set<Long> ids = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (UserBatchItem item : chunk.values()) {
+            if (item.id() != null) {
+                ids.add(item.id());
+            }
+            if (item.user() != null) {
+                emails.add(item.user().email());
+            }
+        }
+
+        // два запроса на всю пачку вместо findById/findByEmail на каждый элемент
+        Map<Long, User> usersById = new HashMap<>();
+        userRepository.findAllById(ids).forEach(user -> usersById.put(user.getId(), user));
+        Map<String, Long> takenEmails = new HashMap<>();
+        userRepository.findAllByEmailIn(emails).forEach(user -> takenEmails.put(user.getEmail(), user.getId()));
+
+        Map<Integer, User> created = new LinkedHashMap<>();
+        List<User> deleted = new ArrayList<>();
+
+        for (Map.Entry<Integer, UserBatchItem> entry : chunk.entrySet()) {
+            int index = entry.getKey();
+            UserBatchItem item = entry.getValue();
+            switch (item.action()) {
+                case CREATE -> {
+                    String email = item.user().email();
+                    if (takenEmails.containsKey(email)) {
+                        results.put(index, emailExists(index, email));
+                    } else {
+                        takenEmails.put(email, null);
+                        created.put(index, userMapper.toEntity(item.user()));
+                    }
+                }
+                case UPDATE -> {
+                    User user = usersById.get(item.id());
+                    String email = item.user().email();
+                    if (user == null) {
+                        results.put(index, notFound(index, item.id()));
+                    } else if (takenEmails.containsKey(email) && !user.getId().equals(takenEmails.get(email))) {
+                        results.put(index, emailExists(index, email));
+                    } else {
+                        takenEmails.put(email, user.getId());
+                        applicationEventPublisher.publishEvent(UserChangedEvent.of(user.getId(), user.getEmail(), email));
+                        UserUpdateRequest update = toUpdateRequest(item.user());
+                        Map<String, Object> changes = userMapper.changedFields(user, update);
+                        userMapper.updateEntity(user, update);
+                        if (changes.containsKey("email")) {
+                            emailBloomFilter.add(email);
+                        }
+                        if (!changes.isEmpty()) {
+                            userEventPublisher.publishUserUpdated(user.getId(), email, changes);
+                        }
+                        userChangeLog.upserted(user.getId());
+                        results.put(index, UserBatchItemResult.ok(index, UPDATED, user.getId()));
+                    }
+                }
+                case DELETE -> {
+                    User user = usersById.remove(item.id());
+                    if (user == null) {
+                        results.put(index, notFound(index, item.id()));
+                    } else {
+                        deleted.add(user);
+                        results.put(index, UserBatchItemResult.ok(index, DELETED, user.getId()));
+                    }
+                }
+            }
+        }
+
+        // INSERT/UPDATE уходят JDBC-батчами (hibernate.jdbc.batch_size), удаление — одним UPDATE deleted_at
+        userRepository.saveAll(created.values());
+        userRepository.flush();
+        if (!deleted.isEmpty()) {
+            userRepository.softDeleteAllByIdIn(deleted.stream().map(User::getId).toList(), LocalDateTime.now());
+        }
+
+        created.forEach((index, user) -> {
+            results.put(index, UserBatchItemResult.ok(index, CREATED, user.getId()));
+            emailBloomFilter.add(user.getEmail());
+            userEventPublisher.publishUserCreated(user.getId(), user.getEmail());
+            userChangeLog.upserted(user.getId());
+        });
+        deleted.forEach(user -> {
+            userEventPublisher.publishUserDeleted(user.getId(), user.getEmail());
+            applicationEventPublisher.publishEvent(UserChangedEvent.of(user.getId(), user.getEmail()));
+            userChangeLog.deleted(user.getId());
+        });
+
+        return results;
+    }
+
+    private String validate(UserBatchItem item) {
+        if (item == null || item.action() == null) {
+            return "action: Action is required";
+        }
+        if (item.action() != CREATE && item.id() == null) {
+            return "id: Id is required for " + item.action();
+        }
+        if (item.action() == DELETE) {
+            return null;
+        }
+        if (item.user() == null) {
+            return "user: User payload is required for " + item.action();
+        }
+        return item.action() == CREATE
+                ? describe(validator.validate(item.user()))
+                : describe(validator.validate(toUpdateRequest(item.user())));
+    }
+
+    private static String describe(Set<? extends ConstraintViolation<?>> violations) {
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static UserUpdateRequest toUpdateRequest(UserCreateRequest user) {
+        return new UserUpdateRequest(user.name(), user.email(), user.age());
+    }
+
+    private static UserBatchItemResult emailExists(int index, String email) {
+        return UserBatchItemResult.failed(index, EMAIL_ALREADY_EXISTS, "User with email already exists: " + email);
+    }
+
+    private static UserBatchItemResult notFound(int index, Long id) {
+        return UserBatchItemResult.failed(index, USER_NOT_FOUND, "User with id " + id + " not found");
+    }
+}
@@ -0,0 +1,105 @@
+package ru.itwizardry.userservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Записывает изменения пользователей в user_changes — по строке на пользователя с номером последнего изменения.
+ * Номер — xid транзакции в старших битах и порядковый номер строки в младших, без общего лока и MAX(seq):
+ * транзакции пишут параллельно. Читатель берёт только номера ниже {@link #watermark(long)} от xmin своего
+ * снимка — их транзакции уже завершены, а ещё не закоммиченные получат номер не меньше границы,
+ * поэтому курсор since ничего не пропускает.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserChangeLog {
+
+    // до 65536 строк на транзакцию; seq остаётся точным числом в JavaScript (< 2^53), пока xid < 2^37
+    static final int ORDINAL_BITS = 16;
+
+    private static final String UPSERT = """
+            INSERT INTO user_changes (user_id, seq, deleted, changed_at)
+            VALUES (?, (pg_current_xact_id()::text::bigint << %d) + ?, ?, ?)
+            ON CONFLICT (user_id) DO UPDATE
+            SET seq = EXCLUDED.seq, deleted = EXCLUDED.deleted, changed_at = EXCLUDED.changed_at
+            """.formatted(ORDINAL_BITS);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // первый seq, который ещё может появиться, если самая старая незавершённая транзакция — oldestRunningXid
+    static long watermark(long oldestRunningXid) {
+        return oldestRunningXid << ORDINAL_BITS;
+    }
+
+    public void upserted(long userId) {
+        pending().put(userId, false);
+    }
+
+    public void deleted(long userId) {
+        pending().put(userId, true);
+    }
+
+    // userId -> deleted; несколько изменений одного пользователя в транзакции дают одну строку
+    @SuppressWarnings("unchecked")
+    private Map<Long, Boolean> pending() {
+        Assert.state(TransactionSynchronizationManager.isSynchronizationActive(),
+                "User changes must be recorded inside a transaction");
+        Map<Long, Boolean> pending = (Map<Long, Boolean>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<Long, Boolean> changes = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    write(changes);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResource(UserChangeLog.this);
+                }
+            });
+            pending = changes;
+        }
+        return pending;
+    }
+
+    private void write(Map<Long, Boolean> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Assert.state(changes.size() < 1 << ORDINAL_BITS, "Too many user changes in one transaction");
+
+        List<Map.Entry<Long, Boolean>> rows = new ArrayList<>(changes.entrySet());
+        LocalDateTime now = LocalDateTime.now();
+        // без подзапросов в VALUES: reWriteBatchedInserts склеивает батч в один INSERT
+        jdbcTemplate.batchUpdate(UPSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Long, Boolean> row = rows.get(i);
+                ps.setLong(1, row.getKey());
+                ps.setLong(2, i);
+                ps.setBoolean(3, row.getValue());
+                ps.setObject(4, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,14 @@
+package ru.itwizardry.userservice.service;
+
+import ru.itwizardry.userservice.dto.UserChangeDto;
+
+import java.util.List;
+
+public interface UserChangeService {
+
+    // изменения с seq > since по возрастанию seq; промежуточные изменения одного пользователя схлопнуты
+    List<UserChangeDto> findChanges(long since, int limit);
+
+    // seq последнего изменения, после которого уже ничего не появится; 0 — изменений нет
+    long lastSeq();
+}
@@ -0,0 +1,41 @@
+package ru.itwizardry.userservice.service;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.itwizardry.userservice.dto.UserChangeDto;
+import ru.itwizardry.userservice.mapper.UserMapper;
+import ru.itwizardry.userservice.repository.UserChangeRepository;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Timed(value = "user.service", histogram = true)
+public class UserChangeServiceImpl implements UserChangeService {
+
+    private final UserChangeRepository userChangeRepository;
+    private final UserMapper userMapper;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserChangeDto> findChanges(long since, int limit) {
+        return userChangeRepository.findChangesAfter(since, watermark(), Limit.of(limit)).stream()
+                .map(row -> row.user() == null
+                        ? UserChangeDto.tombstone(row.seq(), row.userId())
+                        : UserChangeDto.of(row.seq(), userMapper.toDto(row.user())))
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long lastSeq() {
+        return userChangeRepository.findLastSeq(watermark());
+    }
+
+    private long watermark() {
+        return UserChangeLog.watermark(userChangeRepository.findOldestRunningXid());
+    }
+}
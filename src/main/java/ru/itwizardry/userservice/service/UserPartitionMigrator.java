@@ -0,0 +1,100 @@
+package ru.itwizardry.userservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Переносит строки из users в users_partitioned (009-create-users-partitioned) порциями по id.
+ * Прогресс пишется в users_partition_migration в той же транзакции, что и порция, — после рестарта
+ * перенос продолжается с места остановки. Строки порции держат FOR SHARE только пока она копируется;
+ * записи, сделанные во время переноса, доносит триггер trg_users_mirror.
+ * Когда строк не осталось, ставит done — следующий запуск приложения выполнит 010-users-partitioned-cutover.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.partitioning.migration.enabled", havingValue = "true")
+public class UserPartitionMigrator {
+
+    // строка прогресса под FOR UPDATE: порцию копирует только один инстанс, остальные пропускают ход
+    private static final String CLAIM =
+            "SELECT last_id FROM users_partition_migration WHERE id = 1 AND NOT done FOR UPDATE SKIP LOCKED";
+
+    // FOR SHARE: параллельный DELETE подождёт конца порции, и триггер удалит уже скопированную строку.
+    // DO NOTHING: строку, которую триггер успел перенести сам, он же и держит актуальной
+    private static final String COPY_BATCH = """
+            WITH batch AS (
+                SELECT id, name, email, age, created_at, version, deleted_at
+                FROM users
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                FOR SHARE
+            ), copied AS (
+                INSERT INTO users_partitioned (id, name, email, age, created_at, version, deleted_at)
+                SELECT id, name, email, age, created_at, version, deleted_at FROM batch
+                ON CONFLICT (id, created_at) DO NOTHING
+            )
+            SELECT count(*) AS batch_rows, max(id) AS last_id FROM batch
+            """;
+
+    private static final String ADVANCE = "UPDATE users_partition_migration SET last_id = ? WHERE id = 1";
+    private static final String FINISH = "UPDATE users_partition_migration SET done = TRUE WHERE id = 1";
+    private static final String IS_DONE = "SELECT done FROM users_partition_migration WHERE id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Counter copied;
+
+    private volatile boolean finished;
+
+    public UserPartitionMigrator(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.partitioning.migration.batch-size:1000}") int batchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.copied = Counter.builder("users.partition.migration.rows")
+                .description("Rows copied from users to users_partitioned")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.partitioning.migration.rate-ms:200}")
+    public void copyNextBatch() {
+        if (finished) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> claimed = jdbcTemplate.queryForList(CLAIM, Long.class);
+            if (claimed.isEmpty()) {
+                // уже перенесено или порцию сейчас копирует другой инстанс
+                finished = Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_DONE, Boolean.class));
+                return;
+            }
+            Map<String, Object> batch = jdbcTemplate.queryForMap(COPY_BATCH, claimed.get(0), batchSize);
+            long rows = ((Number) batch.get("batch_rows")).longValue();
+            if (rows == 0) {
+                jdbcTemplate.update(FINISH);
+                finished = true;
+                log.info("users copied to users_partitioned, cutover runs on the next start");
+                return;
+            }
+            jdbcTemplate.update(ADVANCE, ((Number) batch.get("last_id")).longValue());
+            copied.increment(rows);
+        });
+    }
+}
@@ -0,0 +1,67 @@
+package ru.itwizardry.userservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itwizardry.userservice.config.DbPoolPressure;
+import ru.itwizardry.userservice.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Физически удаляет пользователей, помеченных deleted_at, небольшими порциями — по одной за такт.
+ * Порция в своей транзакции и со SKIP LOCKED: блокировки короткие, запросы на запись их не ждут.
+ * Пока пул соединений перегружен ({@link DbPoolPressure}), такт пропускается — очистка подождёт.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.purge.enabled", havingValue = "true", matchIfMissing = true)
+public class UserPurger {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<DbPoolPressure> dbPoolPressure;
+    private final Counter purged;
+    private final int batchSize;
+    private final Duration retention;
+
+    public UserPurger(
+            UserRepository userRepository,
+            PlatformTransactionManager transactionManager,
+            ObjectProvider<DbPoolPressure> dbPoolPressure,
+            MeterRegistry meterRegistry,
+            @Value("${app.purge.batch-size:500}") int batchSize,
+            @Value("${app.purge.retention:PT1H}") Duration retention
+    ) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dbPoolPressure = dbPoolPressure;
+        this.batchSize = batchSize;
+        this.retention = retention;
+        this.purged = Counter.builder("users.purged")
+                .description("Soft-deleted users removed by the background purge")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.purge.rate-ms:1000}")
+    public void purgeBatch() {
+        DbPoolPressure pressure = dbPoolPressure.getIfAvailable();
+        if (pressure != null && pressure.isOverloaded()) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        Integer removed = transactionTemplate.execute(status -> userRepository.purgeDeleted(before, batchSize));
+        if (removed != null && removed > 0) {
+            purged.increment(removed);
+            log.debug("Purged {} soft-deleted users", removed);
+        }
+    }
+}
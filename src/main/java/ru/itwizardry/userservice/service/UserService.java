@@ -2,20 +2,32 @@ package ru.itwizardry.userservice.service;
 
 import ru.itwizardry.userservice.dto.UserCreateRequest;
 import ru.itwizardry.userservice.dto.UserDto;
+import ru.itwizardry.userservice.dto.UserPage;
+import ru.itwizardry.userservice.dto.UserQuery;
+import ru.itwizardry.userservice.dto.UserField;
 import ru.itwizardry.userservice.dto.UserUpdateRequest;
+import ru.itwizardry.userservice.dto.UserViewPage;
 
-import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserService {
     UserDto createUser(UserCreateRequest request);
 
-    UserDto updateUser(Long id, UserUpdateRequest request);
+    // expectedVersion — из If-Match; null — без проверки
+    UserDto updateUser(Long id, UserUpdateRequest request, Long expectedVersion);
 
     void deleteUser(Long id);
 
     UserDto getUserById(Long id);
 
-    List<UserDto> findByAge(int age);
+    Optional<UserDto> findByEmail(String email);
 
-    List<UserDto> getAllUsers();
+    UserPage findUsers(UserQuery query, String after, int limit);
+
+    // компактный режим: проекция по колонкам вместо сущностей
+    UserViewPage findUserViews(UserQuery query, String after, int limit, Set<UserField> fields);
+
+    void streamUsers(long after, Consumer<UserDto> sink);
 }
\ No newline at end of file
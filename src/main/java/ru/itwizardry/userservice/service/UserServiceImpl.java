@@ -1,36 +1,73 @@
 package ru.itwizardry.userservice.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.itwizardry.userservice.cache.EmailBloomFilter;
+import ru.itwizardry.userservice.cache.UserChangedEvent;
 import ru.itwizardry.userservice.domain.User;
 import ru.itwizardry.userservice.dto.UserCreateRequest;
 import ru.itwizardry.userservice.dto.UserDto;
+import ru.itwizardry.userservice.dto.UserPage;
+import ru.itwizardry.userservice.dto.UserQuery;
+import ru.itwizardry.userservice.dto.UserField;
 import ru.itwizardry.userservice.dto.UserUpdateRequest;
+import ru.itwizardry.userservice.dto.UserView;
+import ru.itwizardry.userservice.dto.UserViewPage;
 import ru.itwizardry.userservice.exception.EmailAlreadyExistsException;
+import ru.itwizardry.userservice.exception.PreconditionFailedException;
 import ru.itwizardry.userservice.exception.UserNotFoundException;
 import ru.itwizardry.userservice.kafka.publisher.UserEventPublisher;
 import ru.itwizardry.userservice.mapper.UserMapper;
+import ru.itwizardry.userservice.repository.UserCursor;
 import ru.itwizardry.userservice.repository.UserRepository;
+import ru.itwizardry.userservice.repository.UserSort;
+import ru.itwizardry.userservice.repository.UserSpecifications;
+
+import static ru.itwizardry.userservice.config.CacheConfig.USERS_BY_EMAIL;
+import static ru.itwizardry.userservice.config.CacheConfig.USERS_BY_ID;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "user.service", histogram = true)
 @Transactional
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final UserEventPublisher userEventPublisher;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final UserChangeLog userChangeLog;
+    private final EmailBloomFilter emailBloomFilter;
 
     @Override
     public UserDto createUser(UserCreateRequest request) {
+        // «точно нет» — сразу INSERT; «возможно есть» — дешёвый SELECT вместо упавшего INSERT и отката.
+        // Гонку между проверкой и INSERT по-прежнему ловит unique-индекс
+        if (emailBloomFilter.isReady() && emailBloomFilter.mightContain(request.email())
+                && userRepository.findByEmail(request.email()).isPresent()) {
+            throw new EmailAlreadyExistsException(request.email());
+        }
         try {
             User user = userMapper.toEntity(request);
             User saved = userRepository.saveAndFlush(user); // важно!
-            userEventPublisher.publishUserCreated(saved.getEmail());
+            emailBloomFilter.add(saved.getEmail());
+            userEventPublisher.publishUserCreated(saved.getId(), saved.getEmail());
+            userChangeLog.upserted(saved.getId());
             return userMapper.toDto(saved);
         } catch (DataIntegrityViolationException ex) {
             throw new EmailAlreadyExistsException(request.email(), ex);
@@ -38,13 +75,27 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public UserDto updateUser(Long id, UserUpdateRequest request) {
+    public UserDto updateUser(Long id, UserUpdateRequest request, Long expectedVersion) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException(id));
+        if (expectedVersion != null && user.getVersion() != expectedVersion) {
+            throw new PreconditionFailedException(
+                    "User " + id + " is at version " + user.getVersion() + ", If-Match expected " + expectedVersion);
+        }
 
+        String previousEmail = user.getEmail();
         try {
+            Map<String, Object> changes = userMapper.changedFields(user, request);
             userMapper.updateEntity(user, request);
             User saved = userRepository.saveAndFlush(user);
+            if (changes.containsKey("email")) {
+                emailBloomFilter.add(saved.getEmail());
+            }
+            if (!changes.isEmpty()) {
+                userEventPublisher.publishUserUpdated(id, saved.getEmail(), changes);
+            }
+            applicationEventPublisher.publishEvent(UserChangedEvent.of(id, previousEmail, saved.getEmail()));
+            userChangeLog.upserted(id);
             return userMapper.toDto(saved);
         } catch (DataIntegrityViolationException ex) {
             throw new EmailAlreadyExistsException(request.email(), ex);
@@ -53,31 +104,77 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public void deleteUser(Long id) {
-        User user = userRepository.findById(id)
+        String email = userRepository.softDeleteByIdReturningEmail(id)
                 .orElseThrow(() -> new UserNotFoundException(id));
 
-        userRepository.delete(user);
-
-        userEventPublisher.publishUserDeleted(user.getEmail());
+        userEventPublisher.publishUserDeleted(id, email);
+        applicationEventPublisher.publishEvent(UserChangedEvent.of(id, email));
+        userChangeLog.deleted(id);
     }
 
+    // Без readOnly: промах кэша читается с primary, а не с реплики. Строка с отстающей реплики,
+    // взятая сразу после эвикшна, пролежала бы в кэше весь TTL — и её получил бы даже сам писавший клиент
     @Override
-    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = USERS_BY_ID, key = "#id")
     public UserDto getUserById(Long id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException(id));
         return userMapper.toDto(user);
     }
 
+    // с primary по той же причине, что и getUserById
+    @Override
+    @Cacheable(cacheNames = USERS_BY_EMAIL, key = "#email", unless = "#result == null")
+    public Optional<UserDto> findByEmail(String email) {
+        return userRepository.findByEmail(email).map(userMapper::toDto);
+    }
+
     @Override
     @Transactional(readOnly = true)
-    public List<UserDto> findByAge(int age) {
-        return userMapper.toDtoList(userRepository.findAllByAge(age));
+    public UserPage findUsers(UserQuery query, String after, int limit) {
+        UserSort sort = UserSort.parse(query.sort());
+        Specification<User> spec = specification(query, sort, after);
+
+        // limit + 1: лишняя строка говорит, есть ли следующая страница, без отдельного count(*)
+        List<User> rows = userRepository.findBy(spec, q -> q.sortBy(sort.toSort()).limit(limit + 1).all());
+        if (rows.size() <= limit) {
+            return new UserPage(userMapper.toDtoList(rows), null);
+        }
+        List<User> page = rows.subList(0, limit);
+        return new UserPage(userMapper.toDtoList(page), UserCursor.encode(sort, page.get(limit - 1)));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<UserDto> getAllUsers() {
-        return userMapper.toDtoList(userRepository.findAll());
+    public UserViewPage findUserViews(UserQuery query, String after, int limit, Set<UserField> fields) {
+        UserSort sort = UserSort.parse(query.sort());
+        Specification<User> spec = specification(query, sort, after);
+
+        List<UserView> rows = userRepository.findViews(spec, sort, fields, limit + 1);
+        if (rows.size() <= limit) {
+            return new UserViewPage(rows, null);
+        }
+        List<UserView> page = rows.subList(0, limit);
+        return new UserViewPage(page, UserCursor.encode(sort, page.get(limit - 1)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamUsers(long after, Consumer<UserDto> sink) {
+        try (Stream<User> users = userRepository.streamByIdGreaterThanOrderByIdAsc(after)) {
+            users.forEach(user -> {
+                sink.accept(userMapper.toDto(user));
+                // не копим сущности в persistence context — память постоянная на любом объёме
+                entityManager.detach(user);
+            });
+        }
+    }
+
+    private static Specification<User> specification(UserQuery query, UserSort sort, String after) {
+        Specification<User> spec = UserSpecifications.matching(query);
+        if (after != null) {
+            spec = spec.and(UserSpecifications.after(sort, UserCursor.decode(sort, after)));
+        }
+        return spec;
     }
 }
@@ -0,0 +1,11 @@
+--liquibase formatted sql
+
+--changeset hodkonem:002-create-outbox-table
+CREATE TABLE outbox
+(
+    id          BIGSERIAL PRIMARY KEY,
+    topic       VARCHAR(255) NOT NULL,
+    message_key VARCHAR(255) NOT NULL,
+    payload     TEXT         NOT NULL,
+    created_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset hodkonem:003-users-id-pooled-sequence
+-- шаг совпадает с allocationSize в User: Hibernate выдаёт id из памяти и может батчить INSERT
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
@@ -0,0 +1,10 @@
+--liquibase formatted sql
+
+--changeset hodkonem:004-users-filter-indexes runInTransaction:false
+-- CONCURRENTLY: строим индексы без блокировки записи в users
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_age_id ON users (age, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_created_at_id ON users (created_at, id);
+-- префиксный поиск: lower(name) LIKE 'abc%'
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_lower_name_pattern ON users (lower(name) text_pattern_ops);
+-- сортировка по имени и keyset-курсор (lower(name), id)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_lower_name_id ON users (lower(name), id);
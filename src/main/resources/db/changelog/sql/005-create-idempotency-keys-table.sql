@@ -0,0 +1,16 @@
+--liquibase formatted sql
+
+--changeset hodkonem:005-create-idempotency-keys-table
+-- status IS NULL: запрос с этим ключом ещё выполняется
+CREATE TABLE idempotency_keys
+(
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    request_hash    VARCHAR(64)  NOT NULL,
+    status          INT,
+    location        VARCHAR(2048),
+    content_type    VARCHAR(255),
+    body            TEXT,
+    created_at      TIMESTAMP    NOT NULL,
+    expires_at      TIMESTAMP    NOT NULL
+);
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
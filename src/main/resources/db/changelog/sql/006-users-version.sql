@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset hodkonem:006-users-version
+-- версия строки: ETag для GET и If-Match/optimistic locking для PUT
+ALTER TABLE users ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
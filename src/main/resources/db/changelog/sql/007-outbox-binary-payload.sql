@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset hodkonem:007-outbox-binary-payload
+-- payload хранится байтами как есть (JSON или CBOR), формат — в content_type
+ALTER TABLE outbox ALTER COLUMN payload TYPE BYTEA USING convert_to(payload, 'UTF8');
+ALTER TABLE outbox ADD COLUMN content_type VARCHAR(64) NOT NULL DEFAULT 'application/json';
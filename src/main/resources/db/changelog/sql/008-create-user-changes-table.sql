@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+--changeset hodkonem:008-create-user-changes-table
+-- лента изменений для GET /api/users/changes: одна строка на пользователя с номером последнего изменения
+CREATE TABLE user_changes (
+    user_id    BIGINT PRIMARY KEY,
+    seq        BIGINT    NOT NULL,
+    deleted    BOOLEAN   NOT NULL,
+    changed_at TIMESTAMP NOT NULL
+);
+
+CREATE UNIQUE INDEX ux_user_changes_seq ON user_changes (seq);
+
+-- уже существующие пользователи попадают в ленту, чтобы since=0 отдавал полный снимок
+INSERT INTO user_changes (user_id, seq, deleted, changed_at)
+SELECT id, ROW_NUMBER() OVER (ORDER BY id), FALSE, created_at
+FROM users;
@@ -0,0 +1,103 @@
+--liquibase formatted sql
+
+--changeset hodkonem:009-create-users-partitioned
+-- новая раскладка users: холодная и горячая часть по created_at, внутри каждой — 8 hash-партиций по id.
+-- Поиск, UPDATE и DELETE по id отсекают 7 из 8 партиций в каждой части, фильтры по created_at — часть целиком
+CREATE TABLE users_partitioned (
+    id         BIGINT       NOT NULL DEFAULT nextval('users_id_seq'),
+    name       VARCHAR(100) NOT NULL,
+    email      VARCHAR(255) NOT NULL,
+    age        INT          NOT NULL,
+    created_at TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    version    BIGINT       NOT NULL DEFAULT 0,
+
+    CONSTRAINT pk_users_partitioned PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- индексы на родителе создаются и на каждой партиции
+CREATE INDEX idx_users_partitioned_email ON users_partitioned (email);
+CREATE INDEX idx_users_partitioned_age_id ON users_partitioned (age, id);
+CREATE INDEX idx_users_partitioned_created_at_id ON users_partitioned (created_at, id);
+CREATE INDEX idx_users_partitioned_lower_name_pattern ON users_partitioned (lower(name) text_pattern_ops);
+CREATE INDEX idx_users_partitioned_lower_name_id ON users_partitioned (lower(name), id);
+
+-- UNIQUE (email) на секционированной таблице невозможен: ключ разбиения обязан входить в уникальный индекс.
+-- Уникальность держит эта таблица, её ведёт триггер users_email_guard
+CREATE TABLE user_emails (
+    email   VARCHAR(255) NOT NULL,
+    user_id BIGINT       NOT NULL,
+
+    CONSTRAINT uk_user_emails_email PRIMARY KEY (email)
+);
+
+-- прогресс переноса строк (UserPartitionMigrator): одна строка, обновляется вместе с каждой порцией
+CREATE TABLE users_partition_migration (
+    id      INT     PRIMARY KEY CHECK (id = 1),
+    last_id BIGINT  NOT NULL,
+    done    BOOLEAN NOT NULL
+);
+
+INSERT INTO users_partition_migration (id, last_id, done) VALUES (1, 0, FALSE);
+
+--changeset hodkonem:009-create-users-partitions splitStatements:false
+-- холодная часть — строки старше ${usersArchiveAge} на момент миграции, горячая — всё, что новее
+DO $$
+DECLARE
+    boundary TIMESTAMP := date_trunc('month', now() - INTERVAL '${usersArchiveAge}');
+BEGIN
+    EXECUTE format('CREATE TABLE users_archive PARTITION OF users_partitioned '
+        || 'FOR VALUES FROM (MINVALUE) TO (%L) PARTITION BY HASH (id)', boundary);
+    EXECUTE format('CREATE TABLE users_hot PARTITION OF users_partitioned '
+        || 'FOR VALUES FROM (%L) TO (MAXVALUE) PARTITION BY HASH (id)', boundary);
+    FOR i IN 0..7 LOOP
+        EXECUTE format('CREATE TABLE users_archive_%s PARTITION OF users_archive '
+            || 'FOR VALUES WITH (MODULUS 8, REMAINDER %s)', i, i);
+        EXECUTE format('CREATE TABLE users_hot_%s PARTITION OF users_hot '
+            || 'FOR VALUES WITH (MODULUS 8, REMAINDER %s)', i, i);
+    END LOOP;
+END
+$$;
+
+--changeset hodkonem:009-create-users-email-guard splitStatements:false
+CREATE FUNCTION users_email_guard() RETURNS trigger AS $$
+BEGIN
+    -- Hibernate пишет в UPDATE все колонки: тот же email — не изменение
+    IF TG_OP = 'UPDATE' AND NEW.email = OLD.email THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        DELETE FROM user_emails WHERE email = OLD.email AND user_id = OLD.id;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        -- дубликат падает здесь с unique_violation, как раньше на uk_users_email
+        INSERT INTO user_emails (email, user_id) VALUES (NEW.email, NEW.id);
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+--changeset hodkonem:009-create-users-mirror splitStatements:false
+-- пока идёт перенос, каждая запись в users повторяется в users_partitioned:
+-- строки, которые мигратор уже прошёл, не устаревают, а новые попадают туда сразу
+CREATE FUNCTION users_mirror_to_partitioned() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM users_partitioned WHERE id = OLD.id AND created_at = OLD.created_at;
+        RETURN NULL;
+    END IF;
+    INSERT INTO users_partitioned (id, name, email, age, created_at, version)
+    VALUES (NEW.id, NEW.name, NEW.email, NEW.age, NEW.created_at, NEW.version)
+    ON CONFLICT (id, created_at) DO UPDATE
+        SET name = EXCLUDED.name, email = EXCLUDED.email, age = EXCLUDED.age, version = EXCLUDED.version;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+--changeset hodkonem:009-create-users-partitioned-triggers
+CREATE TRIGGER trg_users_email_guard
+    AFTER INSERT OR UPDATE OF email OR DELETE ON users_partitioned
+    FOR EACH ROW EXECUTE FUNCTION users_email_guard();
+
+CREATE TRIGGER trg_users_mirror
+    AFTER INSERT OR UPDATE OR DELETE ON users
+    FOR EACH ROW EXECUTE FUNCTION users_mirror_to_partitioned();
@@ -0,0 +1,15 @@
+--liquibase formatted sql
+
+--changeset hodkonem:010-users-partitioned-cutover
+--preconditions onFail:CONTINUE
+--precondition-sql-check expectedResult:1 SELECT count(*) FROM users_partition_migration WHERE done
+-- переключение на секционированную таблицу, когда UserPartitionMigrator перенёс все строки.
+-- До этого changeset пропускается и проверяется заново при следующем запуске.
+-- Данные не копируются: блокировка users держится только на время переименований
+LOCK TABLE users IN ACCESS EXCLUSIVE MODE;
+DROP TRIGGER trg_users_mirror ON users;
+DROP FUNCTION users_mirror_to_partitioned();
+ALTER TABLE users RENAME TO users_legacy;
+ALTER TABLE users_partitioned RENAME TO users;
+-- иначе DROP TABLE users_legacy удалит и последовательность id
+ALTER SEQUENCE users_id_seq OWNED BY users.id;
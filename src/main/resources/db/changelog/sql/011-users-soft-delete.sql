@@ -0,0 +1,107 @@
+--liquibase formatted sql
+
+--changeset hodkonem:011-users-deleted-at
+-- мягкое удаление: DELETE на запросе только ставит отметку, строки потом порциями удаляет UserPurger
+ALTER TABLE users ADD COLUMN deleted_at TIMESTAMP;
+
+--changeset hodkonem:011-users-partitioned-deleted-at
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:1 SELECT count(*) FROM pg_class WHERE relname = 'users_partitioned'
+-- перенос ещё не переключён (010): колонка нужна и в новой таблице
+ALTER TABLE users_partitioned ADD COLUMN deleted_at TIMESTAMP;
+
+--changeset hodkonem:011-users-mirror-deleted-at splitStatements:false
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:1 SELECT count(*) FROM pg_class WHERE relname = 'users_partitioned'
+CREATE OR REPLACE FUNCTION users_mirror_to_partitioned() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM users_partitioned WHERE id = OLD.id AND created_at = OLD.created_at;
+        RETURN NULL;
+    END IF;
+    INSERT INTO users_partitioned (id, name, email, age, created_at, version, deleted_at)
+    VALUES (NEW.id, NEW.name, NEW.email, NEW.age, NEW.created_at, NEW.version, NEW.deleted_at)
+    ON CONFLICT (id, created_at) DO UPDATE
+        SET name = EXCLUDED.name, email = EXCLUDED.email, age = EXCLUDED.age, version = EXCLUDED.version,
+            deleted_at = EXCLUDED.deleted_at;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+--changeset hodkonem:011-users-email-guard-deleted-at splitStatements:false
+-- занятым считается только адрес неудалённого пользователя
+CREATE OR REPLACE FUNCTION users_email_guard() RETURNS trigger AS $$
+DECLARE
+    was_active BOOLEAN := FALSE;
+    is_active  BOOLEAN := FALSE;
+BEGIN
+    IF TG_OP <> 'INSERT' THEN
+        was_active := OLD.deleted_at IS NULL;
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        is_active := NEW.deleted_at IS NULL;
+    END IF;
+    -- Hibernate пишет в UPDATE все колонки: тот же email у того же живого пользователя — не изменение
+    IF TG_OP = 'UPDATE' AND was_active AND is_active THEN
+        IF NEW.email = OLD.email THEN
+            RETURN NULL;
+        END IF;
+    END IF;
+    IF was_active THEN
+        DELETE FROM user_emails WHERE email = OLD.email AND user_id = OLD.id;
+    END IF;
+    IF is_active THEN
+        INSERT INTO user_emails (email, user_id) VALUES (NEW.email, NEW.id);
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+--changeset hodkonem:011-users-email-guard-trigger splitStatements:false
+-- триггер на секционированной таблице, как бы она сейчас ни называлась (users_partitioned или users после 010)
+DO $$
+DECLARE
+    target REGCLASS;
+BEGIN
+    SELECT tgrelid::regclass INTO target
+    FROM pg_trigger
+    WHERE tgname = 'trg_users_email_guard' AND tgparentid = 0;
+    EXECUTE format('DROP TRIGGER trg_users_email_guard ON %s', target);
+    EXECUTE format('CREATE TRIGGER trg_users_email_guard '
+        || 'AFTER INSERT OR UPDATE OF email, deleted_at OR DELETE ON %s '
+        || 'FOR EACH ROW EXECUTE FUNCTION users_email_guard()', target);
+END
+$$;
+
+--changeset hodkonem:011-users-active-email-index runInTransaction:false
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT count(*) FROM pg_partitioned_table WHERE partrelid = 'users'::regclass
+-- users ещё не секционирована: уникальность email держит индекс, теперь только среди неудалённых
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS ux_users_email_active ON users (email) WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_deleted_at ON users (deleted_at) WHERE deleted_at IS NOT NULL;
+
+--changeset hodkonem:011-users-drop-email-unique
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT count(*) FROM pg_partitioned_table WHERE partrelid = 'users'::regclass
+ALTER TABLE users DROP CONSTRAINT uk_users_email;
+
+--changeset hodkonem:011-users-partitions-deleted-at-index runInTransaction:false
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:1 SELECT count(*) FROM pg_class WHERE relname = 'users_hot_0'
+-- CONCURRENTLY нельзя на секционированном родителе — строим на каждой партиции (009-create-users-partitions)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_archive_0_deleted_at ON users_archive_0 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_archive_1_deleted_at ON users_archive_1 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_archive_2_deleted_at ON users_archive_2 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_archive_3_deleted_at ON users_archive_3 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_archive_4_deleted_at ON users_archive_4 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_archive_5_deleted_at ON users_archive_5 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_archive_6_deleted_at ON users_archive_6 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_archive_7_deleted_at ON users_archive_7 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_hot_0_deleted_at ON users_hot_0 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_hot_1_deleted_at ON users_hot_1 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_hot_2_deleted_at ON users_hot_2 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_hot_3_deleted_at ON users_hot_3 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_hot_4_deleted_at ON users_hot_4 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_hot_5_deleted_at ON users_hot_5 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_hot_6_deleted_at ON users_hot_6 (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_hot_7_deleted_at ON users_hot_7 (deleted_at) WHERE deleted_at IS NOT NULL;
@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+--changeset hodkonem:012-idempotency-binary-body
+-- тело ответа хранится байтами как есть: CBOR не переживает перевод в текст
+ALTER TABLE idempotency_keys ALTER COLUMN body TYPE BYTEA USING convert_to(body, 'UTF8');
+ALTER TABLE idempotency_keys ADD COLUMN etag VARCHAR(255);
+ALTER TABLE idempotency_keys ADD COLUMN vary VARCHAR(255);
@@ -0,0 +1,167 @@
+package ru.itwizardry.userservice.api;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.itwizardry.userservice.dto.IdempotentResponse;
+import ru.itwizardry.userservice.service.IdempotencyService;
+import ru.itwizardry.userservice.service.IdempotencyService.Claim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyFilterTest {
+
+    private final IdempotencyService idempotencyService = mock(IdempotencyService.class);
+    private final IdempotencyFilter filter = new IdempotencyFilter(idempotencyService);
+
+    @Test
+    void cachedBody_canBeReadWithReadListener() throws Exception {
+        when(idempotencyService.claim(anyString(), anyString())).thenReturn(new Claim.Acquired());
+        List<String> events = new ArrayList<>();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+
+        filter.doFilter(request("{\"name\":\"Ivan\"}"), new MockHttpServletResponse(), (req, res) -> {
+            ServletInputStream in = req.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    events.add("data");
+                    byte[] buffer = new byte[4];
+                    while (in.isReady() && !in.isFinished()) {
+                        int n = in.read(buffer);
+                        if (n > 0) {
+                            read.write(buffer, 0, n);
+                        }
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    events.add("done");
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    events.add("error");
+                }
+            });
+            ((HttpServletResponse) res).setStatus(201);
+        });
+
+        assertThat(events).containsExactly("data", "done");
+        assertThat(read.toString(StandardCharsets.UTF_8)).isEqualTo("{\"name\":\"Ivan\"}");
+        verify(idempotencyService).complete(anyString(), any());
+    }
+
+    @Test
+    void emptyBody_goesStraightToAllDataRead() throws Exception {
+        when(idempotencyService.claim(anyString(), anyString())).thenReturn(new Claim.Acquired());
+        List<String> events = new ArrayList<>();
+
+        filter.doFilter(request(""), new MockHttpServletResponse(), (req, res) ->
+                req.getInputStream().setReadListener(new ReadListener() {
+                    @Override
+                    public void onDataAvailable() {
+                        events.add("data");
+                    }
+
+                    @Override
+                    public void onAllDataRead() {
+                        events.add("done");
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        events.add("error");
+                    }
+                }));
+
+        assertThat(events).containsExactly("done");
+    }
+
+    @Test
+    void listenerFailure_isReportedToOnError() throws Exception {
+        when(idempotencyService.claim(anyString(), anyString())).thenReturn(new Claim.Acquired());
+        List<Throwable> errors = new ArrayList<>();
+
+        filter.doFilter(request("{}"), new MockHttpServletResponse(), (req, res) ->
+                req.getInputStream().setReadListener(new ReadListener() {
+                    @Override
+                    public void onDataAvailable() throws IOException {
+                        throw new IOException("broken");
+                    }
+
+                    @Override
+                    public void onAllDataRead() {
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        errors.add(t);
+                    }
+                }));
+
+        assertThat(errors).singleElement().extracting(Throwable::getMessage).isEqualTo("broken");
+    }
+
+    @Test
+    void cborResponse_isReplayedByteForByte_withEtagAndVary() throws Exception {
+        // 0xFF и 0xC3 0x28 — не UTF-8: через String такое тело не доживёт до повтора
+        byte[] cbor = {(byte) 0xA2, 0x62, 0x69, 0x64, 0x01, 0x61, 0x78, (byte) 0xFF, (byte) 0xC3, 0x28};
+        when(idempotencyService.claim(anyString(), anyString())).thenReturn(new Claim.Acquired());
+        MockHttpServletResponse first = new MockHttpServletResponse();
+
+        filter.doFilter(request("{}"), first, (req, res) -> {
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setStatus(201);
+            response.setContentType("application/cbor");
+            response.setHeader(HttpHeaders.ETAG, "\"1-0\"");
+            response.addHeader(HttpHeaders.VARY, "Accept");
+            response.addHeader(HttpHeaders.VARY, "Origin");
+            response.getOutputStream().write(cbor);
+        });
+
+        ArgumentCaptor<IdempotentResponse> stored = ArgumentCaptor.forClass(IdempotentResponse.class);
+        verify(idempotencyService).complete(eq("key-1"), stored.capture());
+        assertThat(stored.getValue().body()).isEqualTo(cbor);
+
+        when(idempotencyService.claim(anyString(), anyString())).thenReturn(new Claim.Completed(stored.getValue()));
+        MockHttpServletResponse replayed = new MockHttpServletResponse();
+        filter.doFilter(request("{}"), replayed, (req, res) -> {
+            throw new AssertionError("replay must not reach the controller");
+        });
+
+        assertThat(replayed.getStatus()).isEqualTo(201);
+        assertThat(replayed.getHeader(IdempotencyFilter.IDEMPOTENT_REPLAYED)).isEqualTo("true");
+        assertThat(replayed.getContentType()).isEqualTo("application/cbor");
+        assertThat(replayed.getHeader(HttpHeaders.ETAG)).isEqualTo(first.getHeader(HttpHeaders.ETAG));
+        assertThat(replayed.getHeader(HttpHeaders.VARY)).isEqualTo("Accept, Origin");
+        assertThat(replayed.getContentAsByteArray()).isEqualTo(first.getContentAsByteArray()).isEqualTo(cbor);
+        assertThat(replayed.getContentLength()).isEqualTo(cbor.length);
+    }
+
+    private static MockHttpServletRequest request(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/users");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY, "key-1");
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
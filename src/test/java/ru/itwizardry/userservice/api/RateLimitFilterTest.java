@@ -0,0 +1,118 @@
+package ru.itwizardry.userservice.api;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.itwizardry.userservice.api.RateLimitFilter.Budget;
+import ru.itwizardry.userservice.api.RateLimitFilter.Clients;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicBoolean overloaded = new AtomicBoolean();
+    private final RateLimitFilter filter = new RateLimitFilter(
+            new Budget(0.01, 2), new Budget(0.01, 3), new Clients(Set.of("a", "b"), 1000, 1000),
+            overloaded::get, Duration.ofSeconds(1), registry);
+
+    @Test
+    void bulkBudget_exhausted_returns429_withRetryAfter() throws Exception {
+        assertThat(perform("GET", "/api/users", "a").getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/api/users", "a").getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse rejected = perform("GET", "/api/users", "a");
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isNotNull();
+        assertThat(rejected.getContentAsString()).contains("\"code\":\"RATE_LIMITED\"");
+
+        // другой клиент и дешёвый бюджет того же клиента не затронуты
+        assertThat(perform("GET", "/api/users", "b").getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/api/users/1", "a").getStatus()).isEqualTo(200);
+        assertThat(registry.get("api.rate.limit.requests").tag("budget", "bulk").tag("result", "limited")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void overloaded_shedsBulkRequests_only() throws Exception {
+        overloaded.set(true);
+
+        MockHttpServletResponse shed = perform("GET", "/api/users/stream", "a");
+        assertThat(shed.getStatus()).isEqualTo(503);
+        assertThat(shed.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(perform("GET", "/api/users/1", "a").getStatus()).isEqualTo(200);
+        assertThat(perform("POST", "/api/users", "a").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void unknownApiKeysAndClientIds_areIgnored_clientIsRemoteAddress() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1");
+            request.addHeader(RateLimitFilter.API_KEY, "forged-" + i);
+            request.addHeader(ReadYourWritesFilter.CLIENT_ID, "client-" + i);
+            assertThat(perform(filter, request).getStatus()).isEqualTo(200);
+        }
+
+        MockHttpServletRequest rotated = new MockHttpServletRequest("GET", "/api/users/1");
+        rotated.addHeader(RateLimitFilter.API_KEY, "forged-next");
+        assertThat(perform(filter, rotated).getStatus()).isEqualTo(429);
+
+        // известный ключ с того же адреса — свой бюджет
+        assertThat(perform("GET", "/api/users/1", "a").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void authenticatedPrincipal_hasOwnBucket_regardlessOfAddress() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1");
+            request.setUserPrincipal(() -> "alice");
+            request.setRemoteAddr("10.0.0." + i);
+            assertThat(perform(filter, request).getStatus()).isEqualTo(200);
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1");
+        request.setUserPrincipal(() -> "alice");
+        assertThat(perform(filter, request).getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void newClientsAboveCap_shareOneBucket_establishedClientsKeepTheirs() throws Exception {
+        SimpleMeterRegistry cappedRegistry = new SimpleMeterRegistry();
+        RateLimitFilter capped = new RateLimitFilter(new Budget(0.01, 2), new Budget(0.01, 3),
+                new Clients(Set.of(), 1000, 1), overloaded::get, Duration.ofSeconds(1), cappedRegistry);
+
+        assertThat(perform(capped, fromAddress("10.0.0.1")).getStatus()).isEqualTo(200);
+        // следующие новые адреса в ту же секунду — в общем ведре на 3 запроса
+        for (int i = 2; i <= 4; i++) {
+            assertThat(perform(capped, fromAddress("10.0.0." + i)).getStatus()).isEqualTo(200);
+        }
+        assertThat(perform(capped, fromAddress("10.0.0.5")).getStatus()).isEqualTo(429);
+        assertThat(perform(capped, fromAddress("10.0.0.1")).getStatus()).isEqualTo(200);
+        assertThat(cappedRegistry.get("api.rate.limit.overflow").tag("budget", "item").functionCounter().count())
+                .isEqualTo(4);
+    }
+
+    private MockHttpServletResponse perform(String method, String uri, String apiKey) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.addHeader(RateLimitFilter.API_KEY, apiKey);
+        return perform(filter, request);
+    }
+
+    private static MockHttpServletResponse perform(RateLimitFilter filter, MockHttpServletRequest request)
+            throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest fromAddress(String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1");
+        request.setRemoteAddr(address);
+        return request;
+    }
+}
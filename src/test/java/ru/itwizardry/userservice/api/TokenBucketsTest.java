@@ -0,0 +1,39 @@
+package ru.itwizardry.userservice.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final TokenBuckets buckets = new TokenBuckets(200, 400, 10_000, 100, clock::get);
+
+    @Test
+    void slowClients_keepTheirBuckets_andDoNotSpendNewBucketLimit() {
+        // 1000 клиентов заводятся с допустимой скоростью: по 100 в секунду
+        for (int second = 0; second < 10; second++) {
+            clock.set(second * SECOND);
+            for (int i = 0; i < 100; i++) {
+                assertThat(buckets.tryAcquire("client-" + (second * 100 + i), clock.get())).isZero();
+            }
+        }
+
+        // минуту каждый приходит раз в 5 секунд — реже, чем полное ведро (2 с), но чаще MIN_IDLE:
+        // 200 клиентов в секунду, и если бы вёдра заводились заново, половина ушла бы в общее ведро
+        for (int second = 10; second < 70; second++) {
+            clock.set(second * SECOND);
+            for (int client = second % 5; client < 1000; client += 5) {
+                assertThat(buckets.tryAcquire("client-" + client, clock.get())).isZero();
+            }
+        }
+
+        assertThat(buckets.overflowed()).isZero();
+        assertThat(buckets.size()).isEqualTo(1000);
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -18,9 +19,20 @@ import ru.itwizardry.userservice.BaseTest;
 import ru.itwizardry.userservice.dto.UserCreateRequest;
 import ru.itwizardry.userservice.dto.UserUpdateRequest;
 import ru.itwizardry.userservice.kafka.publisher.UserEventPublisher;
+import ru.itwizardry.userservice.repository.UserChangeRepository;
 import ru.itwizardry.userservice.repository.UserRepository;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -43,6 +55,11 @@ class UserControllerIT extends BaseTest {
         r.add("spring.datasource.url", postgres::getJdbcUrl);
         r.add("spring.datasource.username", postgres::getUsername);
         r.add("spring.datasource.password", postgres::getPassword);
+        // схема из Liquibase, а не ddl-auto: email уникален только среди неудалённых, как в проде
+        r.add("spring.liquibase.enabled", () -> "true");
+        r.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        r.add("app.batch.chunk-size", () -> "2");
+        r.add("app.batch.max-items", () -> "4");
 
         r.add("spring.kafka.listener.auto-startup", () -> "false");
         r.add("springdoc.swagger-ui.enabled", () -> "false");
@@ -54,10 +71,16 @@ class UserControllerIT extends BaseTest {
     ObjectMapper objectMapper;
     @Autowired
     UserRepository userRepository;
+    @Autowired
+    UserChangeRepository userChangeRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
 
     @BeforeEach
     void cleanDb() {
-        userRepository.deleteAll();
+        // deleteAll() не видит помеченных deleted_at — чистим таблицу целиком
+        jdbcTemplate.update("DELETE FROM users");
+        userChangeRepository.deleteAll();
     }
 
     @Test
@@ -100,6 +123,35 @@ class UserControllerIT extends BaseTest {
                 .andExpect(jsonPath("$.path").value("/api/users"));
     }
 
+    @Test
+    void delete_thenCreateWithSameEmail_isAllowed() throws Exception {
+        var req = new UserCreateRequest("Ivan", "reuse@test.com", 25);
+        var created = mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        long id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+
+        mockMvc.perform(delete("/api/users/{id}", id))
+                .andExpect(status().isNoContent());
+        var recreated = mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        assertThat(objectMapper.readTree(recreated.getResponse().getContentAsString()).get("id").asLong())
+                .isNotEqualTo(id);
+        mockMvc.perform(get("/api/users/{id}", id))
+                .andExpect(status().isNotFound());
+        // адрес снова занят — живым пользователем
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     void update_then_getAll() throws Exception {
         var created = mockMvc.perform(post("/api/users")
@@ -145,4 +197,304 @@ class UserControllerIT extends BaseTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.code").value("USER_NOT_FOUND"));
     }
+
+    @Test
+    void getAll_pagesByCursor_withNextLink() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/api/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(
+                                    new UserCreateRequest("User" + i, "page" + i + "@test.com", 20 + i))))
+                    .andExpect(status().isCreated());
+        }
+
+        var firstPage = mockMvc.perform(get("/api/users").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.userDtoList.length()").value(2))
+                .andExpect(jsonPath("$._links.next.href").exists())
+                .andReturn();
+
+        String next = objectMapper.readTree(firstPage.getResponse().getContentAsString())
+                .at("/_links/next/href").asText();
+
+        mockMvc.perform(get(next))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.userDtoList.length()").value(1))
+                .andExpect(jsonPath("$._embedded.userDtoList[0].email").value("page2@test.com"))
+                .andExpect(jsonPath("$._links.next").doesNotExist());
+    }
+
+    @Test
+    void batch_duplicateEmail_failsOnlyThatItem() throws Exception {
+        var body = """
+                [
+                  {"action":"CREATE","user":{"name":"A","email":"a@test.com","age":20}},
+                  {"action":"CREATE","user":{"name":"A2","email":"a@test.com","age":21}},
+                  {"action":"CREATE","user":{"name":"B","email":"b@test.com","age":0}},
+                  {"action":"DELETE","id":999999}
+                ]
+                """;
+
+        mockMvc.perform(post("/api/users:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(4))
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.results[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.results[0].id").exists())
+                .andExpect(jsonPath("$.results[1].code").value("EMAIL_ALREADY_EXISTS"))
+                .andExpect(jsonPath("$.results[2].code").value("VALIDATION_ERROR"))
+                .andExpect(jsonPath("$.results[3].code").value("USER_NOT_FOUND"));
+    }
+
+    @Test
+    void batch_overMaxItems_isRejected() throws Exception {
+        var item = """
+                {"action":"CREATE","user":{"name":"U","email":"u%d@test.com","age":20}}""";
+        var json = new StringBuilder("[");
+        var ndjson = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            json.append(i == 0 ? "" : ",").append(item.formatted(i));
+            ndjson.append(item.formatted(i)).append('\n');
+        }
+
+        mockMvc.perform(post("/api/users:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.append("]").toString()))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.code").value("BATCH_TOO_LARGE"));
+        assertThat(userRepository.count()).isZero();
+
+        // NDJSON считается по ходу чтения: две пачки по 2 уже применены, пятая строка — за лимитом
+        mockMvc.perform(post("/api/users:batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson.toString()))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.code").value("BATCH_TOO_LARGE"))
+                .andExpect(jsonPath("$.message").value(containsString("first 4 items were processed")));
+        assertThat(userRepository.count()).isEqualTo(4);
+    }
+
+    @Test
+    void batchNdjson_appliesItemsInChunks() throws Exception {
+        var body = """
+                {"action":"CREATE","user":{"name":"A","email":"a@test.com","age":20}}
+                {"action":"CREATE","user":{"name":"B","email":"b@test.com","age":0}}
+                {"action":"CREATE","user":{"name":"C","email":"c@test.com","age":22}}
+                """;
+
+        mockMvc.perform(post("/api/users:batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.succeeded").value(2))
+                .andExpect(jsonPath("$.results[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.results[1].code").value("VALIDATION_ERROR"))
+                .andExpect(jsonPath("$.results[2].status").value("CREATED"));
+    }
+
+    @Test
+    void getAll_filtersAndSorts_withKeysetCursor() throws Exception {
+        var users = new UserCreateRequest[]{
+                new UserCreateRequest("Ivan", "ivan.f@test.com", 30),
+                new UserCreateRequest("ivanka", "ivanka.f@test.com", 30),
+                new UserCreateRequest("Iván_x", "ivan_x.f@test.com", 41),
+                new UserCreateRequest("Petr", "petr.f@test.com", 35)
+        };
+        for (var user : users) {
+            mockMvc.perform(post("/api/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(user)))
+                    .andExpect(status().isCreated());
+        }
+
+        var firstPage = mockMvc.perform(get("/api/users")
+                        .param("namePrefix", "IVAN")
+                        .param("maxAge", "40")
+                        .param("sort", "age,desc")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.userDtoList.length()").value(1))
+                .andExpect(jsonPath("$._embedded.userDtoList[0].age").value(30))
+                .andExpect(jsonPath("$._links.next.href").exists())
+                .andReturn();
+
+        String next = objectMapper.readTree(firstPage.getResponse().getContentAsString())
+                .at("/_links/next/href").asText();
+
+        mockMvc.perform(get(next))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.userDtoList.length()").value(1))
+                .andExpect(jsonPath("$._embedded.userDtoList[0].age").value(30))
+                .andExpect(jsonPath("$._links.next").doesNotExist());
+    }
+
+    @Test
+    void create_retryWithIdempotencyKey_replaysOriginalResponse() throws Exception {
+        String key = UUID.randomUUID().toString();
+        String body = objectMapper.writeValueAsString(new UserCreateRequest("Idem", "idem@test.com", 33));
+
+        var first = mockMvc.perform(post("/api/users")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        mockMvc.perform(post("/api/users")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(header().string("Location", first.getResponse().getHeader("Location")))
+                .andExpect(header().string("ETag", first.getResponse().getHeader("ETag")))
+                .andExpect(content().json(first.getResponse().getContentAsString(), true));
+
+        mockMvc.perform(post("/api/users")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserCreateRequest("Other", "other@test.com", 34))))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.code").value("IDEMPOTENCY_KEY_REUSED"));
+
+        assertThat(userRepository.count()).isEqualTo(1);
+        verify(userEventPublisher, times(1)).publishUserCreated(anyLong(), eq("idem@test.com"));
+    }
+
+    @Test
+    void getAll_compactProjection_pagesByCursor() throws Exception {
+        for (var name : new String[]{"Boris", "anna", "Clara"}) {
+            mockMvc.perform(post("/api/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(
+                                    new UserCreateRequest(name, name.toLowerCase() + "@compact.com", 30))))
+                    .andExpect(status().isCreated());
+        }
+
+        var firstPage = mockMvc.perform(get("/api/users")
+                        .param("fields", "email")
+                        .param("sort", "name")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.content[0].email").value("anna@compact.com"))
+                .andExpect(jsonPath("$.content[0].id").doesNotExist())
+                .andExpect(jsonPath("$.content[1].email").value("boris@compact.com"))
+                .andExpect(jsonPath("$._links").doesNotExist())
+                .andReturn();
+
+        String next = objectMapper.readTree(firstPage.getResponse().getContentAsString()).get("nextAfter").asText();
+
+        mockMvc.perform(get("/api/users")
+                        .accept(UserMediaTypes.COMPACT_JSON)
+                        .param("sort", "name")
+                        .param("after", next))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content[0].name").value("Clara"))
+                .andExpect(jsonPath("$.content[0].age").value(30))
+                .andExpect(jsonPath("$.nextAfter").doesNotExist());
+    }
+
+    @Test
+    void changes_returnLatestStatePerUser_andTombstones() throws Exception {
+        long[] ids = new long[2];
+        for (int i = 0; i < 2; i++) {
+            var created = mockMvc.perform(post("/api/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(
+                                    new UserCreateRequest("User" + i, "user" + i + "@changes.com", 20 + i))))
+                    .andExpect(status().isCreated())
+                    .andReturn();
+            ids[i] = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+        }
+        mockMvc.perform(put("/api/users/{id}", ids[0])
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new UserUpdateRequest("Renamed", "user0@changes.com", 40))))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/users/{id}", ids[1]))
+                .andExpect(status().isNoContent());
+
+        var started = mockMvc.perform(get("/api/users/changes")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .param("since", "0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        // 4 изменения схлопнуты в 2: обновлённый пользователь и надгробие удалённого, по возрастанию seq
+        assertThat(lines).hasSize(2);
+        var upsert = objectMapper.readTree(lines[0]);
+        var tombstone = objectMapper.readTree(lines[1]);
+        assertThat(upsert.get("id").asLong()).isEqualTo(ids[0]);
+        assertThat(upsert.get("deleted").asBoolean()).isFalse();
+        assertThat(upsert.get("user").get("name").asText()).isEqualTo("Renamed");
+        assertThat(tombstone.get("id").asLong()).isEqualTo(ids[1]);
+        assertThat(tombstone.get("deleted").asBoolean()).isTrue();
+        assertThat(tombstone.has("user")).isFalse();
+        assertThat(tombstone.get("seq").asLong()).isGreaterThan(upsert.get("seq").asLong());
+    }
+
+    @Test
+    void export_ndjson_resumesAfterId_andSkipsDeleted() throws Exception {
+        long[] ids = new long[3];
+        for (int i = 0; i < 3; i++) {
+            var created = mockMvc.perform(post("/api/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(
+                                    new UserCreateRequest("User" + i, "user" + i + "@export.com", 20 + i))))
+                    .andExpect(status().isCreated())
+                    .andReturn();
+            ids[i] = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+        }
+        mockMvc.perform(delete("/api/users/{id}", ids[2]))
+                .andExpect(status().isNoContent());
+
+        String[] lines = mockMvc.perform(get("/api/users/export")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .param("after", String.valueOf(ids[0])))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        // первый пропущен курсором, третий удалён
+        assertThat(lines).hasSize(1);
+        var user = objectMapper.readTree(lines[0]);
+        assertThat(user.get("id").asLong()).isEqualTo(ids[1]);
+        assertThat(user.get("email").asText()).isEqualTo("user1@export.com");
+        assertThat(user.get("createdAt").isTextual()).isTrue();
+    }
+
+    @Test
+    void export_csv_gzip() throws Exception {
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new UserCreateRequest("Ivan, Jr.", "ivan@export.com", 25))))
+                .andExpect(status().isCreated());
+
+        byte[] body = mockMvc.perform(get("/api/users/export")
+                        .accept("text/csv")
+                        .header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Content-Disposition", containsString("users.csv")))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        String csv;
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String[] lines = csv.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).isEqualTo("id,name,email,age,createdAt");
+        assertThat(lines[1]).contains("\"Ivan, Jr.\",ivan@export.com,25,");
+    }
 }
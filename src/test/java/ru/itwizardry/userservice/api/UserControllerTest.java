@@ -1,6 +1,7 @@
 package ru.itwizardry.userservice.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,19 +14,33 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.itwizardry.userservice.BaseTest;
 import ru.itwizardry.userservice.api.hateoas.UserModelAssembler;
+import ru.itwizardry.userservice.cache.EmailBloomFilter;
 import ru.itwizardry.userservice.dto.UserCreateRequest;
 import ru.itwizardry.userservice.dto.UserDto;
+import ru.itwizardry.userservice.dto.UserField;
+import ru.itwizardry.userservice.dto.UserPage;
+import ru.itwizardry.userservice.dto.UserQuery;
 import ru.itwizardry.userservice.dto.UserUpdateRequest;
+import ru.itwizardry.userservice.dto.UserView;
+import ru.itwizardry.userservice.dto.UserViewPage;
 import ru.itwizardry.userservice.exception.EmailAlreadyExistsException;
+import ru.itwizardry.userservice.exception.InvalidQueryParameterException;
+import ru.itwizardry.userservice.exception.PreconditionFailedException;
 import ru.itwizardry.userservice.exception.UserNotFoundException;
 import ru.itwizardry.userservice.service.UserService;
 
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -43,6 +58,9 @@ class UserControllerTest extends BaseTest {
     @MockitoBean
     UserModelAssembler userModelAssembler;
 
+    @MockitoBean
+    EmailBloomFilter emailBloomFilter;
+
 
     private static final LocalDateTime CREATED_AT = LocalDateTime.parse("2026-01-19T15:48:43.944");
     private static final String CREATED_AT_JSON = "2026-01-19T15:48:43.944";
@@ -52,7 +70,7 @@ class UserControllerTest extends BaseTest {
         mockAssemblerToModel();
 
         var request = new UserCreateRequest("Ivan", "ivan@test.com", 25);
-        var created = new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT);
+        var created = new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT, 0);
 
         Mockito.when(userService.createUser(any(UserCreateRequest.class))).thenReturn(created);
 
@@ -63,13 +81,23 @@ class UserControllerTest extends BaseTest {
     @Test
     void getById_returns200() throws Exception {
         mockAssemblerToModel();
-        var dto = new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT);
+        var dto = new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT, 0);
         Mockito.when(userService.getUserById(1L)).thenReturn(dto);
 
 
         mockMvc.perform(get("/api/users/1")).andExpect(status().isOk()).andExpect(jsonPath("$.id").value(1)).andExpect(jsonPath("$.createdAt").value(CREATED_AT_JSON));
     }
 
+    @Test
+    void getById_whenIfNoneMatchMatches_returns304_withoutBody() throws Exception {
+        var dto = new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT, 3);
+        Mockito.when(userService.getUserById(1L)).thenReturn(dto);
+
+        mockMvc.perform(get("/api/users/1").header("If-None-Match", "\"3\"")).andExpect(status().isNotModified()).andExpect(header().string("ETag", "\"3\"")).andExpect(content().string(""));
+
+        Mockito.verifyNoInteractions(userModelAssembler);
+    }
+
     @Test
     void getById_whenNotFound_returns404_withApiError() throws Exception {
         Mockito.when(userService.getUserById(1L)).thenThrow(new UserNotFoundException(1L));
@@ -79,32 +107,88 @@ class UserControllerTest extends BaseTest {
 
     @Test
     void getAll_withoutAge_returns200_list() throws Exception {
-        mockAssemblerToModel();
-        mockAssemblerToCollectionModel();
+        mockAssemblerToPageModel();
 
-        var users = List.of(new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT), new UserDto(2L, "Petr", "petr@test.com", 30, CREATED_AT));
-        Mockito.when(userService.getAllUsers()).thenReturn(users);
+        var users = List.of(new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT, 0), new UserDto(2L, "Petr", "petr@test.com", 30, CREATED_AT, 0));
+        Mockito.when(userService.findUsers(any(UserQuery.class), isNull(), eq(UserController.DEFAULT_PAGE_LIMIT))).thenReturn(new UserPage(users, null));
 
         mockMvc.perform(get("/api/users")).andExpect(status().isOk()).andExpect(jsonPath("$._embedded.userDtoList.length()").value(2)).andExpect(jsonPath("$._embedded.userDtoList[0].id").value(1)).andExpect(jsonPath("$._embedded.userDtoList[0].createdAt").value(CREATED_AT_JSON));
     }
 
+    @Test
+    void getAll_withCursor_clampsLimit_andPassesCursor() throws Exception {
+        mockAssemblerToPageModel();
+
+        var users = List.of(new UserDto(11L, "Ivan", "ivan@test.com", 25, CREATED_AT, 0));
+        Mockito.when(userService.findUsers(any(UserQuery.class), eq("10"), eq(UserController.MAX_PAGE_LIMIT))).thenReturn(new UserPage(users, "11"));
+
+        mockMvc.perform(get("/api/users").param("after", "10").param("limit", "100000")).andExpect(status().isOk()).andExpect(jsonPath("$._embedded.userDtoList.length()").value(1)).andExpect(jsonPath("$._embedded.userDtoList[0].id").value(11));
+    }
+
     @Test
     void getAll_withAgeParam_returns200_filtered() throws Exception {
-        mockAssemblerToModel();
-        mockAssemblerToCollectionModel();
+        mockAssemblerToPageModel();
 
-        var users = List.of(new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT));
-        Mockito.when(userService.findByAge(25)).thenReturn(users);
+        var users = List.of(new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT, 0));
+        Mockito.when(userService.findUsers(argThat(q -> Integer.valueOf(25).equals(q.age())), isNull(), anyInt())).thenReturn(new UserPage(users, null));
         mockMvc.perform(get("/api/users").param("age", "25")).andExpect(status().isOk()).andExpect(jsonPath("$._embedded.userDtoList.length()").value(1)).andExpect(jsonPath("$._embedded.userDtoList[0].age").value(25));
     }
 
+    @Test
+    void getAll_withFields_returnsCompactJson_withoutAssembler() throws Exception {
+        var views = List.of(new UserView(1L, "Ivan", "ivan@test.com", 25, CREATED_AT, 0L));
+        Mockito.when(userService.findUserViews(any(UserQuery.class), isNull(), eq(UserController.DEFAULT_PAGE_LIMIT), eq(EnumSet.of(UserField.ID, UserField.EMAIL)))).thenReturn(new UserViewPage(views, "1"));
+
+        mockMvc.perform(get("/api/users").param("fields", "id,email")).andExpect(status().isOk()).andExpect(content().contentTypeCompatibleWith(UserMediaTypes.COMPACT_JSON)).andExpect(jsonPath("$.content[0].id").value(1)).andExpect(jsonPath("$.content[0].email").value("ivan@test.com")).andExpect(jsonPath("$.content[0].name").doesNotExist()).andExpect(jsonPath("$.nextAfter").value("1")).andExpect(jsonPath("$._links").doesNotExist());
+
+        Mockito.verifyNoInteractions(userModelAssembler);
+    }
+
+    @Test
+    void getById_withCompactAccept_returnsAllFieldsWithoutLinks() throws Exception {
+        Mockito.when(userService.getUserById(1L)).thenReturn(new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT, 0));
+
+        mockMvc.perform(get("/api/users/1").accept(UserMediaTypes.COMPACT_JSON)).andExpect(status().isOk()).andExpect(content().contentTypeCompatibleWith(UserMediaTypes.COMPACT_JSON)).andExpect(jsonPath("$.name").value("Ivan")).andExpect(jsonPath("$.createdAt").value(CREATED_AT_JSON)).andExpect(jsonPath("$._links").doesNotExist());
+
+        Mockito.verifyNoInteractions(userModelAssembler);
+    }
+
+    @Test
+    void getById_withCborAccept_returnsBinaryCompactView() throws Exception {
+        Mockito.when(userService.getUserById(1L)).thenReturn(new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT, 0));
+
+        var result = mockMvc.perform(get("/api/users/1").param("fields", "id,name").accept(MediaType.APPLICATION_CBOR)).andExpect(status().isOk()).andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR)).andReturn();
+
+        var body = new CBORMapper().readTree(result.getResponse().getContentAsByteArray());
+        assertThat(body.get("id").asLong()).isEqualTo(1L);
+        assertThat(body.get("name").asText()).isEqualTo("Ivan");
+        assertThat(body.has("email")).isFalse();
+    }
+
+    @Test
+    void getAll_withFilters_bindsQuery() throws Exception {
+        mockAssemblerToPageModel();
+        Mockito.when(userService.findUsers(any(UserQuery.class), isNull(), anyInt())).thenReturn(new UserPage(List.of(), null));
+
+        mockMvc.perform(get("/api/users").param("minAge", "18").param("maxAge", "30").param("namePrefix", "iv").param("createdFrom", "2026-01-01T00:00:00").param("sort", "age,desc")).andExpect(status().isOk());
+
+        Mockito.verify(userService).findUsers(eq(new UserQuery(null, 18, 30, "iv", LocalDateTime.parse("2026-01-01T00:00:00"), null, "age,desc")), isNull(), eq(UserController.DEFAULT_PAGE_LIMIT));
+    }
+
+    @Test
+    void getAll_withUnsupportedSort_returns400() throws Exception {
+        Mockito.when(userService.findUsers(any(UserQuery.class), any(), anyInt())).thenThrow(new InvalidQueryParameterException("sort", "Unsupported sort property: email"));
+
+        mockMvc.perform(get("/api/users").param("sort", "email")).andExpect(status().isBadRequest()).andExpect(jsonPath("$.code").value("INVALID_PARAMETER"));
+    }
+
     @Test
     void update_returns200() throws Exception {
         mockAssemblerToModel();
         var request = new UserUpdateRequest("Ivan Updated", "ivan@test.com", 26);
-        var updated = new UserDto(1L, "Ivan Updated", "ivan@test.com", 26, CREATED_AT);
+        var updated = new UserDto(1L, "Ivan Updated", "ivan@test.com", 26, CREATED_AT, 0);
 
-        Mockito.when(userService.updateUser(eq(1L), any(UserUpdateRequest.class))).thenReturn(updated);
+        Mockito.when(userService.updateUser(eq(1L), any(UserUpdateRequest.class), isNull())).thenReturn(updated);
 
         mockMvc.perform(put("/api/users/1").contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(request))).andExpect(status().isOk()).andExpect(jsonPath("$.name").value("Ivan Updated")).andExpect(jsonPath("$.age").value(26)).andExpect(jsonPath("$.createdAt").value(CREATED_AT_JSON));
     }
@@ -113,11 +197,20 @@ class UserControllerTest extends BaseTest {
     void update_whenEmailExists_returns409_withApiError() throws Exception {
         var request = new UserUpdateRequest("Ivan", "dup@test.com", 25);
 
-        Mockito.when(userService.updateUser(eq(1L), any(UserUpdateRequest.class))).thenThrow(new EmailAlreadyExistsException("dup@test.com"));
+        Mockito.when(userService.updateUser(eq(1L), any(UserUpdateRequest.class), isNull())).thenThrow(new EmailAlreadyExistsException("dup@test.com"));
 
         mockMvc.perform(put("/api/users/1").contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(request))).andExpect(status().isConflict()).andExpect(jsonPath("$.status").value(409)).andExpect(jsonPath("$.code").value("EMAIL_ALREADY_EXISTS")).andExpect(jsonPath("$.path").value("/api/users/1"));
     }
 
+    @Test
+    void update_whenIfMatchIsStale_returns412_withApiError() throws Exception {
+        var request = new UserUpdateRequest("Ivan", "ivan@test.com", 25);
+
+        Mockito.when(userService.updateUser(eq(1L), any(UserUpdateRequest.class), eq(2L))).thenThrow(new PreconditionFailedException("User 1 is at version 3, If-Match expected 2"));
+
+        mockMvc.perform(put("/api/users/1").header("If-Match", "\"2\"").contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(request))).andExpect(status().isPreconditionFailed()).andExpect(jsonPath("$.code").value("PRECONDITION_FAILED"));
+    }
+
     @Test
     void delete_returns204() throws Exception {
         mockMvc.perform(delete("/api/users/1")).andExpect(status().isNoContent());
@@ -135,17 +228,34 @@ class UserControllerTest extends BaseTest {
         mockMvc.perform(post("/api/users").contentType(MediaType.APPLICATION_JSON).content(badJson)).andExpect(status().isBadRequest()).andExpect(jsonPath("$.status").value(400)).andExpect(jsonPath("$.code").value("VALIDATION_ERROR")).andExpect(jsonPath("$.path").value("/api/users"));
     }
 
+    private void mockAssemblerToPageModel() {
+        Mockito.when(userModelAssembler.toPageModel(any(UserPage.class))).thenAnswer(inv -> {
+            var page = (UserPage) inv.getArgument(0);
+            return CollectionModel.of(page.content().stream().map(EntityModel::of).toList());
+        });
+    }
+
     private void mockAssemblerToModel() {
         Mockito.when(userModelAssembler.toModel(any(UserDto.class))).thenAnswer(inv -> EntityModel.of(inv.getArgument(0)));
     }
 
-    @SuppressWarnings("unchecked")
-    private void mockAssemblerToCollectionModel() {
-        Mockito.when(userModelAssembler.toCollectionModel(any())).thenAnswer(inv -> {
-            var list = (List<UserDto>) inv.getArgument(0);
-            var models = list.stream().map(EntityModel::of).toList();
-            return CollectionModel.of(models);
-        });
+    @Test
+    void emailExists_whenFilterSaysNo_returns404_withoutLookup() throws Exception {
+        Mockito.when(emailBloomFilter.mightContain("free@test.com")).thenReturn(false);
+
+        mockMvc.perform(head("/api/users/by-email/free@test.com")).andExpect(status().isNotFound());
+
+        Mockito.verifyNoInteractions(userService);
     }
 
+    @Test
+    void emailExists_whenFilterSaysMaybe_checksService() throws Exception {
+        var dto = new UserDto(1L, "Ivan", "ivan@test.com", 25, CREATED_AT, 0);
+        Mockito.when(emailBloomFilter.mightContain(any())).thenReturn(true);
+        Mockito.when(userService.findByEmail("ivan@test.com")).thenReturn(Optional.of(dto));
+        Mockito.when(userService.findByEmail("gone@test.com")).thenReturn(Optional.empty());
+
+        mockMvc.perform(head("/api/users/by-email/ivan@test.com")).andExpect(status().isOk());
+        mockMvc.perform(head("/api/users/by-email/gone@test.com")).andExpect(status().isNotFound());
+    }
 }
@@ -0,0 +1,120 @@
+package ru.itwizardry.userservice.api;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.itwizardry.userservice.BaseTest;
+import ru.itwizardry.userservice.service.UserExporter;
+import ru.itwizardry.userservice.service.UserExporter.Format;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = UserExportController.class, properties = {
+        "app.export.max-concurrent=1",
+        "app.export.retry-after=PT7S"
+})
+class UserExportControllerTest extends BaseTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockitoBean
+    UserExporter userExporter;
+
+    @Test
+    void export_overConcurrencyLimit_returns503_withRetryAfter() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            assertThat(release.await(5, TimeUnit.SECONDS)).isTrue();
+            return 0L;
+        }).when(userExporter).export(eq(Format.CSV), anyLong(), any());
+
+        var running = CompletableFuture.runAsync(() -> {
+            try {
+                mockMvc.perform(get("/api/users/export")).andExpect(status().isOk());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        mockMvc.perform(get("/api/users/export"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "7"))
+                .andExpect(header().doesNotExist("Content-Disposition"))
+                .andExpect(jsonPath("$.code").value("EXPORT_BUSY"));
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        // место освободилось
+        mockMvc.perform(get("/api/users/export")).andExpect(status().isOk());
+    }
+
+    @Test
+    void export_failingBeforeFirstByte_returnsJsonError_withoutExportHeaders() throws Exception {
+        doThrow(new DataAccessResourceFailureException("db down"))
+                .when(userExporter).export(any(), anyLong(), any());
+
+        mockMvc.perform(get("/api/users/export").header("Accept-Encoding", "gzip"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().doesNotExist("Content-Disposition"))
+                .andExpect(jsonPath("$.code").value("INTERNAL_ERROR"));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "gzip              | true",
+            "GZIP, deflate     | true",
+            "gzip;q=0.5        | true",
+            "*                 | true",
+            "gzip;q=0          | false",
+            "gzip; q=0.000     | false",
+            "*, gzip;q=0       | false",
+            "deflate, br       | false",
+            "*;q=0             | false",
+            "identity          | false"
+    })
+    void export_compressesOnlyWhenGzipIsAcceptable(String acceptEncoding, boolean compressed) throws Exception {
+        mockMvc.perform(get("/api/users/export").header("Accept-Encoding", acceptEncoding))
+                .andExpect(status().isOk())
+                .andExpect(compressed
+                        ? header().string("Content-Encoding", "gzip")
+                        : header().doesNotExist("Content-Encoding"));
+    }
+
+    @Test
+    void export_failingAfterCommit_isNotAnsweredWithJson() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write("id,name\n1,Ivan\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            throw new DataAccessResourceFailureException("connection lost");
+        }).when(userExporter).export(any(), anyLong(), any());
+
+        // ответ уже начат: ошибка уходит в контейнер, который обрывает соединение
+        assertThatThrownBy(() -> mockMvc.perform(get("/api/users/export")))
+                .hasRootCauseInstanceOf(DataAccessResourceFailureException.class);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.itwizardry.userservice.api.error;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+import org.springframework.http.HttpStatus;
+import ru.itwizardry.userservice.BaseTest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Прямая запись должна давать те же байты, что ApiError через ObjectMapper приложения
+@JsonTest
+class ApiErrorWriterTest extends BaseTest {
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2026-01-20T10:50:50Z",
+            "2026-01-20T10:50:50.100Z",
+            "2026-01-20T10:50:50.123456Z",
+            "2026-01-20T10:50:50.123456789Z"
+    })
+    void toJson_matchesObjectMapper(String timestamp) throws Exception {
+        Instant instant = Instant.parse(timestamp);
+        String message = "User with email already exists: \"o'neil\"@test.com é\n";
+
+        String expected = objectMapper.writeValueAsString(new ApiError(instant.atOffset(ZoneOffset.UTC),
+                409, "Duplicate Email", message, "EMAIL_ALREADY_EXISTS", "/api/users"));
+        String actual = new String(ApiErrorWriter.toJson(instant, HttpStatus.CONFLICT, "Duplicate Email", message,
+                "EMAIL_ALREADY_EXISTS", "/api/users"), StandardCharsets.UTF_8);
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"2026-01-20T10:50:50Z", "2026-01-20T10:50:50.5Z"})
+    void timestamp_isUtc(String timestamp) throws Exception {
+        byte[] json = ApiErrorWriter.toJson(Instant.parse(timestamp), HttpStatus.NOT_FOUND, "User Not Found",
+                "User not found: 1", "USER_NOT_FOUND", "/api/users/1");
+
+        assertThat(objectMapper.readTree(json).get("timestamp").asText()).endsWith("Z")
+                .isEqualTo(timestamp);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.itwizardry.userservice.api.hateoas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Links;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.itwizardry.userservice.api.UserController;
+import ru.itwizardry.userservice.dto.UserDto;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+class UserModelAssemblerTest {
+
+    private final UserModelAssembler assembler = new UserModelAssembler();
+
+    @BeforeEach
+    void bindRequest() {
+        var request = new MockHttpServletRequest("GET", "/api/users");
+        request.setServerName("users.example.com");
+        request.setServerPort(8443);
+        request.setScheme("https");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void toModel_producesSameLinksAsMethodOn() {
+        var user = new UserDto(42L, "Ivan", "ivan@test.com", 25, LocalDateTime.parse("2026-01-19T15:48:43.944"), 0);
+
+        EntityModel<UserDto> model = assembler.toModel(user);
+
+        Links expected = Links.of(
+                linkTo(methodOn(UserController.class).getById(42L, null)).withSelfRel(),
+                linkTo(methodOn(UserController.class).getAll(null, null, null, null)).withRel("users"),
+                linkTo(UserController.class).slash(42L).withRel("update"),
+                linkTo(UserController.class).slash(42L).withRel("delete")
+        );
+        // аффордансы в HAL не сериализуются, сравниваем то, что уходит в JSON
+        assertThat(model.getLinks().stream().map(Link::toString))
+                .containsExactlyElementsOf(expected.stream().map(Link::toString).toList());
+    }
+
+    @Test
+    void toModel_sharesUsersLinkWithinRequest() {
+        var first = assembler.toModel(new UserDto(1L, "A", "a@test.com", 20, null, 0));
+        var second = assembler.toModel(new UserDto(2L, "B", "b@test.com", 21, null, 0));
+
+        assertThat(first.getRequiredLink("users")).isSameAs(second.getRequiredLink("users"));
+    }
+}
@@ -0,0 +1,106 @@
+package ru.itwizardry.userservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.itwizardry.userservice.BaseTest;
+import ru.itwizardry.userservice.dto.UserChangeDto;
+import ru.itwizardry.userservice.dto.UserCreateRequest;
+import ru.itwizardry.userservice.kafka.publisher.UserEventPublisher;
+import ru.itwizardry.userservice.repository.UserRepository;
+import ru.itwizardry.userservice.service.UserChangeService;
+import ru.itwizardry.userservice.service.UserService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Пересборка фильтра: seq, count и стрим email читаются из одного снимка
+@Testcontainers
+@SpringBootTest
+class EmailBloomFilterIT extends BaseTest {
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void props(DynamicPropertyRegistry r) {
+        r.add("spring.datasource.url", postgres::getJdbcUrl);
+        r.add("spring.datasource.username", postgres::getUsername);
+        r.add("spring.datasource.password", postgres::getPassword);
+
+        r.add("spring.kafka.listener.auto-startup", () -> "false");
+        r.add("springdoc.swagger-ui.enabled", () -> "false");
+    }
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    UserChangeService userChangeService;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM user_changes");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void rebuild_keepsRowInsertedBetweenSeqAndStream() {
+        userService.createUser(new UserCreateRequest("Before", "before@test.com", 30));
+        AtomicReference<Integer> isolation = new AtomicReference<>();
+
+        // пользователь появляется сразу после того, как взят seq, и до count и стрима
+        UserChangeService insertAfterSeq = new UserChangeService() {
+            @Override
+            public List<UserChangeDto> findChanges(long since, int limit) {
+                return userChangeService.findChanges(since, limit);
+            }
+
+            @Override
+            public long lastSeq() {
+                long seq = userChangeService.lastSeq();
+                isolation.set(TransactionSynchronizationManager.getCurrentTransactionIsolationLevel());
+                CompletableFuture.runAsync(() -> userService.createUser(
+                        new UserCreateRequest("Between", "between@test.com", 31))).join();
+                return seq;
+            }
+        };
+        EmailBloomFilter filter = new EmailBloomFilter(userRepository, insertAfterSeq, transactionManager,
+                new SimpleMeterRegistry(), true, 1000, 0.01, Duration.ofHours(6), 1000);
+
+        filter.refresh();
+
+        assertThat(isolation.get()).isEqualTo(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        assertThat(filter.isReady()).isTrue();
+        assertThat(filter.mightContain("before@test.com")).isTrue();
+        // снимок взят до вставки: в стриме строки нет, её догоняет лента user_changes
+        assertThat(filter.mightContain("between@test.com")).isTrue();
+    }
+}
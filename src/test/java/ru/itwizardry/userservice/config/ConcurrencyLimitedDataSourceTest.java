@@ -0,0 +1,116 @@
+package ru.itwizardry.userservice.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConcurrencyLimitedDataSourceTest {
+
+    private final DataSource pool = mock(DataSource.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ConcurrencyLimitedDataSource gate;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        gate = new ConcurrencyLimitedDataSource(pool, "primary", 2, Duration.ofMillis(100), registry);
+    }
+
+    @Test
+    void permitIsHeldUntilClose_andReleasedOnce() throws Exception {
+        Connection first = gate.getConnection();
+        Connection second = gate.getConnection();
+        assertThat(active()).isEqualTo(2);
+
+        assertThatThrownBy(gate::getConnection)
+                .isInstanceOf(SQLTransientConnectionException.class)
+                .hasMessageContaining("100 ms");
+
+        first.close();
+        first.close();
+        assertThat(active()).isEqualTo(1);
+        Connection third = gate.getConnection();
+        // повторный close() не вернул лишнее разрешение
+        assertThatThrownBy(gate::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+
+        second.close();
+        third.close();
+        assertThat(active()).isZero();
+    }
+
+    @Test
+    void closeIsForwardedToPooledConnection() throws Exception {
+        Connection pooled = mock(Connection.class);
+        when(pool.getConnection()).thenReturn(pooled);
+
+        gate.getConnection().close();
+
+        verify(pooled).close();
+    }
+
+    @Test
+    void waiter_getsPermitWhenConnectionIsClosed() throws Exception {
+        ConcurrencyLimitedDataSource slow = new ConcurrencyLimitedDataSource(pool, "replica-1", 1, Duration.ofSeconds(5),
+                registry);
+        Connection held = slow.getConnection();
+
+        CompletableFuture<Connection> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return slow.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("db.gate.waiting").tag("pool", "replica-1").gauge().value() < 1
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(waiter).isNotDone();
+
+        held.close();
+
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(registry.get("db.gate.wait").tag("pool", "replica-1").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void failingPool_returnsPermit() throws Exception {
+        when(pool.getConnection()).thenThrow(new SQLException("pool exhausted"));
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(gate::getConnection).hasMessage("pool exhausted");
+        }
+
+        assertThat(active()).isZero();
+    }
+
+    @Test
+    void waitIsRecorded_evenOnTimeout() throws Exception {
+        gate.getConnection();
+        gate.getConnection();
+        assertThatThrownBy(gate::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+
+        var wait = registry.get("db.gate.wait").tag("pool", "primary").timer();
+        assertThat(wait.count()).isEqualTo(3);
+        assertThat(wait.max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(90);
+    }
+
+    private double active() {
+        return registry.get("db.gate.active").tag("pool", "primary").gauge().value();
+    }
+}
@@ -0,0 +1,49 @@
+package ru.itwizardry.userservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class DbConcurrencyGatesTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ObjectProvider<MeterRegistry> meterRegistry =
+            new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class);
+
+    @Test
+    void eachPool_isGatedByItsOwnSize() {
+        DbConcurrencyGates gates = new DbConcurrencyGates(meterRegistry, 0, 10, Duration.ofSeconds(1));
+
+        assertThat(gates.permitsFor(hikari(20))).isEqualTo(20);
+        assertThat(gates.permitsFor(hikari(4))).isEqualTo(4);
+        assertThat(gates.permitsFor(mock(DataSource.class))).isEqualTo(10);
+
+        gates.gate(hikari(20), "primary");
+        gates.gate(hikari(4), "replica-1");
+        assertThat(registry.find("db.gate.active").gauges()).hasSize(2);
+    }
+
+    @Test
+    void explicitPermits_overridePoolSize() {
+        DbConcurrencyGates gates = new DbConcurrencyGates(meterRegistry, 3, 10, Duration.ofSeconds(1));
+
+        assertThat(gates.permitsFor(hikari(20))).isEqualTo(3);
+    }
+
+    // пул не запускается: размер читается из конфигурации
+    private static HikariDataSource hikari(int size) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setMaximumPoolSize(size);
+        return dataSource;
+    }
+}
@@ -0,0 +1,150 @@
+package ru.itwizardry.userservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.itwizardry.userservice.BaseTest;
+import ru.itwizardry.userservice.dto.UserCreateRequest;
+import ru.itwizardry.userservice.dto.UserUpdateRequest;
+import ru.itwizardry.userservice.kafka.publisher.UserEventPublisher;
+import ru.itwizardry.userservice.service.UserService;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.itwizardry.userservice.api.ReadYourWritesFilter.CLIENT_ID;
+
+// «Реплика» — вторая база в том же контейнере: репликации нет, поэтому она отстаёт сколько угодно,
+// и старую строку в ней кладём руками
+@Testcontainers
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReadReplicaCachingIT extends BaseTest {
+
+    private static final String WRITER = "writer";
+    private static final String READER = "reader";
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void props(DynamicPropertyRegistry r) {
+        r.add("spring.datasource.url", postgres::getJdbcUrl);
+        r.add("spring.datasource.username", postgres::getUsername);
+        r.add("spring.datasource.password", postgres::getPassword);
+        r.add("app.datasource.replicas.enabled", () -> "true");
+        r.add("app.datasource.replicas.urls[0]", ReadReplicaCachingIT::replicaUrl);
+
+        r.add("spring.kafka.listener.auto-startup", () -> "false");
+        r.add("springdoc.swagger-ui.enabled", () -> "false");
+    }
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    ReadReplicas readReplicas;
+    @Autowired
+    UserService userService;
+    @Autowired
+    CacheManager cacheManager;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        replica = new JdbcTemplate(
+                new DriverManagerDataSource(replicaUrl(), postgres.getUsername(), postgres.getPassword()));
+        replica.execute("""
+                CREATE TABLE IF NOT EXISTS users (
+                    id         bigint PRIMARY KEY,
+                    name       varchar(100) NOT NULL,
+                    email      varchar(255) NOT NULL,
+                    age        integer      NOT NULL,
+                    created_at timestamp    NOT NULL,
+                    version    bigint       NOT NULL,
+                    deleted_at timestamp
+                )""");
+        replica.update("DELETE FROM users");
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        readReplicas.check();
+    }
+
+    @Test
+    void cacheMiss_afterWrite_isLoadedFromPrimary_notFromLaggingReplica() throws Exception {
+        var created = mockMvc.perform(post("/api/users")
+                        .header(CLIENT_ID, WRITER)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserCreateRequest("Ivan", "ivan@replica.com", 25))))
+                .andExpect(status().isCreated())
+                .andReturn();
+        long id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+        // реплика видит пользователя таким, каким он был до обновления
+        replica.update("""
+                INSERT INTO users (id, name, email, age, created_at, version)
+                VALUES (?, 'Ivan', 'ivan@replica.com', 25, now(), 0)""", id);
+
+        mockMvc.perform(put("/api/users/{id}", id)
+                        .header(CLIENT_ID, WRITER)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserUpdateRequest("Renamed", "ivan@replica.com", 26))))
+                .andExpect(status().isOk());
+
+        // список по-прежнему читается с реплики — значит, маршрутизация в тесте настоящая
+        mockMvc.perform(get("/api/users").header(CLIENT_ID, READER))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.userDtoList[0].name").value("Ivan"));
+
+        // первый промах после эвикшна — от читателя без закрепления за primary
+        mockMvc.perform(get("/api/users/{id}", id).header(CLIENT_ID, READER))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Renamed"));
+        mockMvc.perform(get("/api/users/{id}", id).header(CLIENT_ID, WRITER))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Renamed"));
+        assertThat(userService.findByEmail("ivan@replica.com"))
+                .hasValueSatisfying(user -> assertThat(user.name()).isEqualTo("Renamed"));
+    }
+
+    private static String replicaUrl() {
+        try (Connection connection = DriverManager.getConnection(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Statement statement = connection.createStatement()) {
+            if (!statement.executeQuery("SELECT 1 FROM pg_database WHERE datname = 'replica'").next()) {
+                statement.execute("CREATE DATABASE replica");
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to create replica database", e);
+        }
+        return postgres.getJdbcUrl().replace("/testdb", "/replica");
+    }
+}
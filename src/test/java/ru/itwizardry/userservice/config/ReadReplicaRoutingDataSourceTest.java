@@ -0,0 +1,105 @@
+package ru.itwizardry.userservice.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.itwizardry.userservice.api.ReadYourWritesFilter;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica = mock(DataSource.class);
+    private final Statement primaryStatement = mock(Statement.class);
+    private final Statement replicaStatement = mock(Statement.class);
+    private final ResultSet lag = mock(ResultSet.class);
+
+    private ReadReplicas replicas;
+    private ReadReplicaRoutingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        Connection primaryConnection = mock(Connection.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(primaryConnection.createStatement()).thenReturn(primaryStatement);
+
+        Connection replicaConnection = mock(Connection.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(replicaConnection.createStatement()).thenReturn(replicaStatement);
+        when(replicaStatement.executeQuery(anyString())).thenReturn(lag);
+        when(lag.next()).thenReturn(true);
+
+        var registry = new SimpleMeterRegistry();
+        replicas = new ReadReplicas(Map.of("replica-1", replica), Duration.ofSeconds(5), Duration.ofSeconds(1), registry);
+        dataSource = new ReadReplicaRoutingDataSource(primary, replicas, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void readOnly_goesToHealthyReplica_writesToPrimary() throws SQLException {
+        replicaLagMillis(100);
+
+        assertThat(statement(true)).isSameAs(replicaStatement);
+        assertThat(statement(false)).isSameAs(primaryStatement);
+    }
+
+    @Test
+    void readOnly_fallsBackToPrimary_beforeFirstCheck_andWhenLagging() throws SQLException {
+        assertThat(statement(true)).isSameAs(primaryStatement);
+
+        replicaLagMillis(60_000);
+
+        assertThat(statement(true)).isSameAs(primaryStatement);
+    }
+
+    @Test
+    void readOnly_fallsBackToPrimary_whenReplicaDown() throws SQLException {
+        replicaLagMillis(0);
+        when(replica.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        assertThat(statement(true)).isSameAs(primaryStatement);
+        assertThat(replicas.pick()).isNull();
+    }
+
+    @Test
+    void readOnly_staysOnPrimary_rightAfterClientWrote() throws SQLException {
+        replicaLagMillis(0);
+        var request = new MockHttpServletRequest();
+        request.setAttribute(ReadYourWritesFilter.PRIMARY_ONLY, Boolean.TRUE);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        assertThat(statement(true)).isSameAs(primaryStatement);
+    }
+
+    private void replicaLagMillis(double millis) throws SQLException {
+        when(lag.getDouble(1)).thenReturn(millis);
+        replicas.check();
+    }
+
+    // так соединение готовит readOnly-транзакция: сначала setReadOnly, физическое соединение — на первом запросе
+    private Statement statement(boolean readOnly) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        connection.setReadOnly(readOnly);
+        return connection.createStatement();
+    }
+}
@@ -0,0 +1,77 @@
+package ru.itwizardry.userservice.kafka.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import ru.itwizardry.userservice.kafka.dto.UserEventDto;
+import ru.itwizardry.userservice.kafka.dto.UserOperation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserEventCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UserEventCodec codec = new UserEventCodec(
+            objectMapper, EventFormat.JSON, Map.of("user.binary", EventFormat.CBOR));
+
+    @Test
+    void formatFor_usesTopicOverride_orDefault() {
+        assertThat(codec.formatFor("user.binary")).isEqualTo(EventFormat.CBOR);
+        assertThat(codec.formatFor("user.notifications")).isEqualTo(EventFormat.JSON);
+    }
+
+    @Test
+    void json_isUnchangedOnTheWire() throws Exception {
+        var event = new UserEventDto(UserOperation.DELETED, "ivan@test.com", 7L);
+
+        byte[] payload = codec.encode(event, EventFormat.JSON);
+
+        assertThat(new String(payload, StandardCharsets.UTF_8)).isEqualTo(objectMapper.writeValueAsString(event));
+        assertThat(codec.decode(payload, EventFormat.JSON)).isEqualTo(event);
+    }
+
+    @Test
+    void cbor_isVersionedArray_withOperationOrdinal() throws Exception {
+        var event = new UserEventDto(UserOperation.DELETED, "ivan@test.com", 7L);
+
+        byte[] payload = codec.encode(event, EventFormat.CBOR);
+
+        var tree = new CBORMapper().readTree(payload);
+        assertThat(tree.isArray()).isTrue();
+        assertThat(tree.get(0).asInt()).isEqualTo(UserEventCodec.SCHEMA_VERSION);
+        assertThat(tree.get(1).asInt()).isEqualTo(UserOperation.DELETED.ordinal());
+        assertThat(tree.get(2).asText()).isEqualTo("ivan@test.com");
+        assertThat(tree.get(3).asLong()).isEqualTo(7L);
+        assertThat(payload.length).isLessThan(codec.encode(event, EventFormat.JSON).length);
+        assertThat(codec.decode(payload, EventFormat.CBOR)).isEqualTo(event);
+    }
+
+    @Test
+    void cbor_rejectsNewerSchemaVersion() throws Exception {
+        byte[] payload = new CBORMapper().writeValueAsBytes(new Object[]{UserEventCodec.SCHEMA_VERSION + 1, 0, "x@test.com"});
+
+        assertThatThrownBy(() -> codec.decode(payload, EventFormat.CBOR))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("schema version");
+    }
+
+    @Test
+    void updated_carriesChangedFields_inBothFormats() {
+        var event = new UserEventDto(UserOperation.UPDATED, "new@test.com", 7L, Map.of("email", "new@test.com", "age", 31));
+
+        assertThat(codec.decode(codec.encode(event, EventFormat.JSON), EventFormat.JSON)).isEqualTo(event);
+        assertThat(codec.decode(codec.encode(event, EventFormat.CBOR), EventFormat.CBOR)).isEqualTo(event);
+    }
+
+    @Test
+    void cbor_readsV1Payload_withoutIdAndChanges() throws Exception {
+        byte[] payload = new CBORMapper().writeValueAsBytes(new Object[]{1, UserOperation.CREATED.ordinal(), "x@test.com"});
+
+        assertThat(codec.decode(payload, EventFormat.CBOR))
+                .isEqualTo(new UserEventDto(UserOperation.CREATED, "x@test.com", null));
+    }
+}
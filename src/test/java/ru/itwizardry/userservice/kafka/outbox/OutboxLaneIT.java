@@ -0,0 +1,123 @@
+package ru.itwizardry.userservice.kafka.outbox;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.itwizardry.userservice.BaseTest;
+import ru.itwizardry.userservice.domain.OutboxEvent;
+import ru.itwizardry.userservice.kafka.publisher.UserEventPublisher;
+import ru.itwizardry.userservice.repository.OutboxRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+@SpringBootTest
+class OutboxLaneIT extends BaseTest {
+
+    private static final int LANES = 4;
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void props(DynamicPropertyRegistry r) {
+        r.add("spring.datasource.url", postgres::getJdbcUrl);
+        r.add("spring.datasource.username", postgres::getUsername);
+        r.add("spring.datasource.password", postgres::getPassword);
+
+        r.add("spring.kafka.listener.auto-startup", () -> "false");
+        r.add("springdoc.swagger-ui.enabled", () -> "false");
+    }
+
+    @Autowired
+    OutboxRepository outboxRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM outbox");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void claimBatch_putsEachKeyIntoOneLane_inIdOrder() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            ids.add(save("user-" + (i % 7)).getId());
+        }
+
+        List<OutboxEvent> claimed = new ArrayList<>();
+        for (int lane = 0; lane < LANES; lane++) {
+            int current = lane;
+            List<OutboxEvent> batch = transactionTemplate.execute(status -> {
+                assertThat(outboxRepository.tryLockLane(current)).isTrue();
+                return outboxRepository.claimBatch(current, LANES, 100);
+            });
+            assertThat(batch).extracting(OutboxEvent::getId).isSorted();
+            // ключ не встречается ни в одной другой полосе
+            for (OutboxEvent event : batch) {
+                assertThat(claimed).noneMatch(other -> other.getMessageKey().equals(event.getMessageKey()));
+            }
+            claimed.addAll(batch);
+        }
+
+        assertThat(claimed).extracting(OutboxEvent::getId).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(outboxRepository.claimBatch(0, 1, 2)).extracting(OutboxEvent::getId)
+                .containsExactly(ids.get(0), ids.get(1));
+    }
+
+    @Test
+    void tryLockLane_isExclusiveUntilCommit() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            assertThat(outboxRepository.tryLockLane(0)).isTrue();
+
+            // другой инстанс: занятая полоса пропускается без ожидания, свободная доступна
+            List<Boolean> other = CompletableFuture.supplyAsync(() -> new TransactionTemplate(transactionManager)
+                            .execute(s -> List.of(outboxRepository.tryLockLane(0), outboxRepository.tryLockLane(1))))
+                    .orTimeout(5, TimeUnit.SECONDS)
+                    .join();
+            assertThat(other).containsExactly(false, true);
+        });
+
+        Boolean afterCommit = CompletableFuture.supplyAsync(() -> new TransactionTemplate(transactionManager)
+                        .execute(s -> outboxRepository.tryLockLane(0)))
+                .get(5, TimeUnit.SECONDS);
+        assertThat(afterCommit).isTrue();
+    }
+
+    private OutboxEvent save(String key) {
+        return outboxRepository.save(OutboxEvent.builder()
+                .topic("user-events")
+                .messageKey(key)
+                .payload(key.getBytes(StandardCharsets.UTF_8))
+                .contentType("application/json")
+                .build());
+    }
+}
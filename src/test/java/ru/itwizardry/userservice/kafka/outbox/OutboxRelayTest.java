@@ -0,0 +1,139 @@
+package ru.itwizardry.userservice.kafka.outbox;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itwizardry.userservice.domain.OutboxEvent;
+import ru.itwizardry.userservice.repository.OutboxRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private final OutboxRepository outboxRepository = mock(OutboxRepository.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final List<String> sent = new ArrayList<>();
+    private final Set<String> failing = new HashSet<>();
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(outboxRepository.tryLockLane(anyInt())).thenReturn(true);
+        when(outboxRepository.claimBatch(anyInt(), anyInt(), anyInt())).thenReturn(List.of());
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+            ProducerRecord<String, byte[]> record = invocation.getArgument(0);
+            String payload = new String(record.value(), StandardCharsets.UTF_8);
+            sent.add(payload);
+            if (failing.contains(payload)) {
+                return CompletableFuture.failedFuture(new KafkaException("broker unavailable"));
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+
+        relay = new OutboxRelay(outboxRepository, kafkaTemplate, new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(relay, "batchSize", 3);
+        ReflectionTestUtils.setField(relay, "sendTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(relay, "lanes", 2);
+    }
+
+    @Test
+    void relay_sendsEachLaneInIdOrder_andDeletesAcked() {
+        when(outboxRepository.claimBatch(0, 2, 3)).thenReturn(List.of(event(1, "a"), event(3, "a")));
+        when(outboxRepository.claimBatch(1, 2, 3)).thenReturn(List.of(event(2, "b")));
+
+        relay.relay();
+
+        assertThat(sent).containsExactly("1", "3", "2");
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(1L, 3L));
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(2L));
+        verify(kafkaTemplate, times(2)).flush();
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void relay_deletesOnlyAckedPrefix_whenSendFails() {
+        failing.add("2");
+        when(outboxRepository.claimBatch(0, 2, 3)).thenReturn(List.of(event(1, "a"), event(2, "a"), event(3, "b")));
+
+        relay.relay();
+
+        // 3 уже ушло, но остаётся в outbox: следующий прогон отправит 2 и 3 снова (at-least-once)
+        assertThat(sent).containsExactly("1", "2", "3");
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(1L));
+        verify(outboxRepository, times(1)).claimBatch(eq(0), anyInt(), anyInt());
+    }
+
+    @Test
+    void relay_deletesNothing_whenFirstSendFails() {
+        failing.add("1");
+        when(outboxRepository.claimBatch(0, 2, 3)).thenReturn(List.of(event(1, "a"), event(2, "a")));
+
+        relay.relay();
+
+        verify(outboxRepository, never()).deleteAllByIdInBatch(anyList());
+    }
+
+    @Test
+    void relay_skipsLaneHeldByAnotherInstance() {
+        when(outboxRepository.tryLockLane(0)).thenReturn(false);
+        when(outboxRepository.claimBatch(1, 2, 3)).thenReturn(List.of(event(2, "b")));
+
+        relay.relay();
+
+        verify(outboxRepository, never()).claimBatch(eq(0), anyInt(), anyInt());
+        assertThat(sent).containsExactly("2");
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(2L));
+    }
+
+    @Test
+    void relay_claimsNextBatch_whileBatchesAreFull() {
+        when(outboxRepository.claimBatch(0, 2, 3))
+                .thenReturn(List.of(event(1, "a"), event(2, "a"), event(3, "a")))
+                .thenReturn(List.of(event(4, "a")));
+
+        relay.relay();
+
+        assertThat(sent).containsExactly("1", "2", "3", "4");
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+        verify(outboxRepository).deleteAllByIdInBatch(List.of(4L));
+        // каждая пачка в своей транзакции: блокировка полосы снимается между пачками
+        verify(outboxRepository, times(2)).tryLockLane(0);
+    }
+
+    private static OutboxEvent event(long id, String key) {
+        return OutboxEvent.builder()
+                .id(id)
+                .topic("user-events")
+                .messageKey(key)
+                .payload(Long.toString(id).getBytes(StandardCharsets.UTF_8))
+                .contentType("application/json")
+                .build();
+    }
+}
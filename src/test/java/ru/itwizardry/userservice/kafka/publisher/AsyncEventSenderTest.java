@@ -0,0 +1,199 @@
+package ru.itwizardry.userservice.kafka.publisher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static ru.itwizardry.userservice.kafka.publisher.EventSpillFileTest.event;
+
+class AsyncEventSenderTest {
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicBoolean brokerUp = new AtomicBoolean(true);
+    private final Set<String> failOnce = ConcurrentHashMap.newKeySet();
+    // stall: send() не завершается, пока тест не отпустит — так воркер «занят», а очередь заполняется
+    private final AtomicBoolean stall = new AtomicBoolean();
+    private final CompletableFuture<SendResult<String, byte[]>> stalled = new CompletableFuture<>();
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private final List<AsyncEventSender> senders = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void broker() {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+            ProducerRecord<String, byte[]> record = invocation.getArgument(0);
+            if (stall.get()) {
+                sending.countDown();
+                return stalled;
+            }
+            if (!brokerUp.get() || failOnce.remove(record.key())) {
+                return CompletableFuture.failedFuture(new KafkaException("broker unavailable"));
+            }
+            delivered.add(record.key());
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @AfterEach
+    void stopSenders() {
+        stalled.complete(null);
+        senders.forEach(AsyncEventSender::stop);
+    }
+
+    @Test
+    void submit_deliversEventsInOrder() throws Exception {
+        AsyncEventSender sender = sender(OverflowPolicy.SPILL, 100, 10, registry);
+        sender.start();
+
+        for (int i = 1; i <= 5; i++) {
+            sender.submit(event(Integer.toString(i)));
+        }
+
+        awaitTrue(() -> delivered.size() == 5);
+        assertThat(delivered).containsExactly("1", "2", "3", "4", "5");
+    }
+
+    @Test
+    void brokerDown_spillsEvents_andReplaysThemInOrderOnceBack() throws Exception {
+        AsyncEventSender sender = sender(OverflowPolicy.SPILL, 100, 10, registry);
+        brokerUp.set(false);
+        sender.start();
+
+        sender.submit(event("1"));
+        sender.submit(event("2"));
+        sender.submit(event("3"));
+        awaitTrue(() -> spillBytes(registry) > 0);
+
+        brokerUp.set(true);
+        awaitTrue(() -> delivered.size() == 3 && spillBytes(registry) == 0);
+        assertThat(delivered).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    void replay_partialAck_resendsFromFirstUnackedEvent() throws Exception {
+        AsyncEventSender sender = sender(OverflowPolicy.SPILL, 100, 10, registry);
+        // до start() воркера нет — события сразу в файле
+        sender.submit(event("1"));
+        sender.submit(event("2"));
+        sender.submit(event("3"));
+        failOnce.add("2");
+
+        sender.start();
+
+        awaitTrue(() -> delivered.size() == 4 && spillBytes(registry) == 0);
+        // «3» подтверждён за неподтверждённым «2», поэтому ушёл повторно: at-least-once, порядок не нарушен
+        assertThat(delivered).containsExactly("1", "3", "2", "3");
+    }
+
+    @Test
+    void overflow_shed_dropsEventAndCountsIt() throws Exception {
+        AsyncEventSender sender = fillQueue(OverflowPolicy.SHED);
+
+        sender.submit(event("3"));
+
+        assertThat(registry.get("user.events.shed").counter().count()).isEqualTo(1);
+        assertThat(spillBytes(registry)).isZero();
+    }
+
+    @Test
+    void overflow_spill_writesToDisk_andDeliversAfterQueuedEvents() throws Exception {
+        AsyncEventSender sender = fillQueue(OverflowPolicy.SPILL);
+
+        sender.submit(event("3"));
+        assertThat(spillBytes(registry)).isPositive();
+
+        stall.set(false);
+        stalled.complete(null);
+        awaitTrue(() -> delivered.size() == 2 && spillBytes(registry) == 0);
+        assertThat(delivered).containsExactly("2", "3");
+    }
+
+    @Test
+    void overflow_block_spillsAfterTimeout_insteadOfThrowing() throws Exception {
+        AsyncEventSender sender = fillQueue(OverflowPolicy.BLOCK);
+
+        assertThatCode(() -> sender.submit(event("3"))).doesNotThrowAnyException();
+
+        assertThat(spillBytes(registry)).isPositive();
+        assertThat(registry.get("user.events.shed").counter().count()).isZero();
+    }
+
+    @Test
+    void submit_afterStop_goesToSpillFile_andIsDeliveredOnNextStart() throws Exception {
+        AsyncEventSender sender = sender(OverflowPolicy.SPILL, 100, 10, registry);
+        sender.start();
+        sender.stop();
+
+        sender.submit(event("1"));
+        assertThat(spillBytes(registry)).isPositive();
+        assertThat(delivered).isEmpty();
+
+        SimpleMeterRegistry nextRegistry = new SimpleMeterRegistry();
+        sender(OverflowPolicy.SPILL, 100, 10, nextRegistry).start();
+        awaitTrue(() -> delivered.size() == 1 && spillBytes(nextRegistry) == 0);
+        assertThat(delivered).containsExactly("1");
+    }
+
+    // очередь на одно событие: «1» висит в send(), «2» занимает очередь, следующее уже не влезает
+    private AsyncEventSender fillQueue(OverflowPolicy policy) throws Exception {
+        AsyncEventSender sender = sender(policy, 1, 1, registry);
+        stall.set(true);
+        sender.start();
+        sender.submit(event("1"));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        sender.submit(event("2"));
+        return sender;
+    }
+
+    private AsyncEventSender sender(OverflowPolicy policy, int capacity, int batchSize, MeterRegistry meterRegistry) {
+        AsyncEventSender sender = new AsyncEventSender(kafkaTemplate, new ObjectMapper(), meterRegistry,
+                capacity, policy, Duration.ofMillis(50), batchSize, Duration.ofSeconds(5), Duration.ofMillis(20),
+                dir.resolve("events.spill"), false);
+        senders.add(sender);
+        return sender;
+    }
+
+    private static double spillBytes(MeterRegistry meterRegistry) {
+        return meterRegistry.get("user.events.spill.bytes").gauge().value();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
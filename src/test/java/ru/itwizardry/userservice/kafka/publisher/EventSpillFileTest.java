@@ -0,0 +1,92 @@
+package ru.itwizardry.userservice.kafka.publisher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventSpillFileTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void open_truncatesTornLastRecord_soNextAppendIsReadable() throws Exception {
+        Path path = dir.resolve("events.spill");
+        new EventSpillFile(path, objectMapper).append(List.of(event("1"), event("2")));
+        // обрыв записи при падении: половина строки без '\n'
+        Files.writeString(path, "{\"operation\":\"CREATED\",\"top", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        EventSpillFile spill = new EventSpillFile(path, objectMapper);
+        spill.append(List.of(event("3")));
+
+        assertThat(keys(spill.read(10))).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    void open_fileWithOnlyTornRecord_hasNoBacklog() throws Exception {
+        Path path = dir.resolve("events.spill");
+        Files.writeString(path, "{\"operation\":", StandardCharsets.UTF_8);
+
+        EventSpillFile spill = new EventSpillFile(path, objectMapper);
+
+        assertThat(spill.hasBacklog()).isFalse();
+        assertThat(Files.size(path)).isZero();
+    }
+
+    @Test
+    void commit_persistsOffset_acrossReopen() {
+        Path path = dir.resolve("events.spill");
+        EventSpillFile spill = new EventSpillFile(path, objectMapper);
+        spill.append(List.of(event("1"), event("2"), event("3")));
+        spill.commit(spill.read(1).getFirst().endOffset());
+
+        EventSpillFile reopened = new EventSpillFile(path, objectMapper);
+
+        assertThat(keys(reopened.read(10))).containsExactly("2", "3");
+    }
+
+    @Test
+    void commit_ofWholeBacklog_truncatesFile() throws Exception {
+        Path path = dir.resolve("events.spill");
+        EventSpillFile spill = new EventSpillFile(path, objectMapper);
+        spill.append(List.of(event("1"), event("2")));
+        spill.commit(spill.read(10).getLast().endOffset());
+
+        assertThat(spill.hasBacklog()).isFalse();
+        assertThat(Files.size(path)).isZero();
+        assertThat(new EventSpillFile(path, objectMapper).hasBacklog()).isFalse();
+    }
+
+    @Test
+    void read_corruptedRecord_isReturnedWithoutEvent() throws Exception {
+        Path path = dir.resolve("events.spill");
+        Files.writeString(path, "not json\n", StandardCharsets.UTF_8);
+        EventSpillFile spill = new EventSpillFile(path, objectMapper);
+        spill.append(List.of(event("1")));
+
+        List<EventSpillFile.Entry> entries = spill.read(10);
+
+        assertThat(entries).hasSize(2);
+        assertThat(entries.getFirst().event()).isNull();
+        assertThat(entries.getLast().event().key()).isEqualTo("1");
+    }
+
+    static PendingEvent event(String key) {
+        return new PendingEvent("CREATED", "user.notifications", key,
+                key.getBytes(StandardCharsets.UTF_8), "application/json");
+    }
+
+    private static List<String> keys(List<EventSpillFile.Entry> entries) {
+        return entries.stream().map(entry -> entry.event().key()).toList();
+    }
+}
@@ -0,0 +1,125 @@
+package ru.itwizardry.userservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.itwizardry.userservice.exception.UserNotFoundException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void load_concurrentCallsWithSameKey_shareOneCall() throws Exception {
+        var flight = new SingleFlight<Long, String>("test", 100, Duration.ofSeconds(5), registry);
+        var calls = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var leader = CompletableFuture.supplyAsync(() -> flight.load(1L, () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "user-1";
+        }));
+        await(started);
+        var follower = CompletableFuture.supplyAsync(() -> flight.load(1L, () -> {
+            calls.incrementAndGet();
+            return "other";
+        }));
+        waitForShared();
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("user-1");
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("user-1");
+        assertThat(calls).hasValue(1);
+        // результат не кэшируется: следующий вызов снова идёт в loader
+        assertThat(flight.load(1L, () -> "fresh")).isEqualTo("fresh");
+    }
+
+    @Test
+    void load_leaderFailure_isRethrownToFollowers() throws Exception {
+        var flight = new SingleFlight<Long, String>("test", 100, Duration.ofSeconds(5), registry);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var leader = CompletableFuture.supplyAsync(() -> flight.load(1L, () -> {
+            started.countDown();
+            await(release);
+            throw new UserNotFoundException(1L);
+        }));
+        await(started);
+        var follower = CompletableFuture.supplyAsync(() -> flight.load(1L, () -> "other"));
+        waitForShared();
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    void load_whenLeaderIsSlowerThanTimeout_followerLoadsItself() throws Exception {
+        var flight = new SingleFlight<Long, String>("test", 100, Duration.ofMillis(50), registry);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var leader = CompletableFuture.supplyAsync(() -> flight.load(1L, () -> {
+            started.countDown();
+            await(release);
+            return "slow";
+        }));
+        await(started);
+
+        assertThat(flight.load(1L, () -> "own")).isEqualTo("own");
+        assertThat(registry.get("user.single.flight.timeouts").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+    }
+
+    @Test
+    void load_whenInFlightMapIsFull_bypassesCoalescing() throws Exception {
+        var flight = new SingleFlight<Long, String>("test", 1, Duration.ofSeconds(5), registry);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var leader = CompletableFuture.supplyAsync(() -> flight.load(1L, () -> {
+            started.countDown();
+            await(release);
+            return "user-1";
+        }));
+        await(started);
+
+        assertThat(flight.load(2L, () -> "user-2")).isEqualTo("user-2");
+        assertThat(registry.get("user.single.flight.calls").tag("result", "bypassed").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        leader.get(5, TimeUnit.SECONDS);
+    }
+
+    // follower регистрируется в счётчике до того, как начинает ждать лидера
+    private void waitForShared() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("user.single.flight.calls").tag("result", "shared").counter().count() < 1) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.itwizardry.userservice.service;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Считает statement на уровне JDBC: видно всё, что уходит в базу, — Hibernate, JdbcTemplate, нативные запросы.
+// executeBatch — один statement (с reWriteBatchedInserts это и один запрос). Считаются только вызовы
+// из потока, сделавшего reset(): фоновые задачи (Bloom-фильтр, планировщики) в счёт не попадают.
+public class SqlStatementCounter implements BeanPostProcessor {
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+    private static volatile Thread owner;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource)) {
+            return new CountingDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    static void reset() {
+        owner = Thread.currentThread();
+        STATEMENTS.clear();
+    }
+
+    static List<String> statements() {
+        return List.copyOf(STATEMENTS);
+    }
+
+    private static void record(String sql) {
+        if (Thread.currentThread() == owner) {
+            STATEMENTS.add(sql);
+        }
+    }
+
+    private static final class CountingDataSource extends DelegatingDataSource {
+
+        private CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return counting(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return counting(super.getConnection(username, password));
+        }
+    }
+
+    private static Connection counting(Connection target) {
+        return (Connection) Proxy.newProxyInstance(SqlStatementCounter.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    if (result instanceof Statement statement) {
+                        // prepareStatement/prepareCall: SQL известен сразу, у createStatement — при execute
+                        String sql = method.getName().startsWith("prepare") ? (String) args[0] : null;
+                        return counting(statement, method.getReturnType(), sql);
+                    }
+                    return result;
+                });
+    }
+
+    private static Object counting(Statement target, Class<?> type, String preparedSql) {
+        return Proxy.newProxyInstance(SqlStatementCounter.class.getClassLoader(),
+                new Class<?>[]{type}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        boolean withSql = args != null && args.length > 0 && args[0] instanceof String;
+                        record(withSql ? (String) args[0] : String.valueOf(preparedSql));
+                    }
+                    return invoke(target, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package ru.itwizardry.userservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.itwizardry.userservice.BaseTest;
+import ru.itwizardry.userservice.cache.UserCacheInvalidator;
+import ru.itwizardry.userservice.dto.UserCreateRequest;
+import ru.itwizardry.userservice.dto.UserDto;
+import ru.itwizardry.userservice.dto.UserUpdateRequest;
+import ru.itwizardry.userservice.exception.UserNotFoundException;
+import ru.itwizardry.userservice.kafka.publisher.UserEventPublisher;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static ru.itwizardry.userservice.config.CacheConfig.USERS_BY_EMAIL;
+import static ru.itwizardry.userservice.config.CacheConfig.USERS_BY_ID;
+
+// Кэш getUserById/findByEmail: попадание без SQL, эвикшн после записи и по сообщению из Kafka
+@Testcontainers
+@SpringBootTest
+@Import(SqlStatementCounter.class)
+class UserCachingIT extends BaseTest {
+
+    private static final String TOPIC = "user.cache.invalidation.test";
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    // брокера нет: проверяем, что эвикшн уходит в топик, и отдаём его обратно слушателю
+    @MockitoBean(name = "kafkaTemplate")
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void props(DynamicPropertyRegistry r) {
+        r.add("spring.datasource.url", postgres::getJdbcUrl);
+        r.add("spring.datasource.username", postgres::getUsername);
+        r.add("spring.datasource.password", postgres::getPassword);
+        r.add("app.cache.broadcast-evictions", () -> "true");
+        r.add("app.cache.invalidation-topic", () -> TOPIC);
+
+        r.add("spring.kafka.listener.auto-startup", () -> "false");
+        r.add("springdoc.swagger-ui.enabled", () -> "false");
+    }
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    UserCacheInvalidator userCacheInvalidator;
+    @Autowired
+    CacheManager cacheManager;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private UserDto existing;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM users");
+        when(kafkaTemplate.send(anyString(), anyString(), anyString())).thenReturn(new CompletableFuture<>());
+        existing = userService.createUser(new UserCreateRequest("Ivan", "ivan@test.com", 25));
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        clearInvocations(kafkaTemplate);
+        SqlStatementCounter.reset();
+    }
+
+    @Test
+    void secondRead_isServedFromCache_withoutSql() {
+        UserDto byId = userService.getUserById(existing.id());
+        UserDto byEmail = userService.findByEmail("ivan@test.com").orElseThrow();
+        assertThat(SqlStatementCounter.statements()).hasSize(2);
+
+        SqlStatementCounter.reset();
+        assertThat(userService.getUserById(existing.id())).isEqualTo(byId);
+        assertThat(userService.findByEmail("ivan@test.com")).contains(byEmail);
+
+        assertThat(SqlStatementCounter.statements()).isEmpty();
+    }
+
+    @Test
+    void missingEmail_isNotCached() {
+        assertThat(userService.findByEmail("nobody@test.com")).isEmpty();
+
+        assertThat(byEmail().get("nobody@test.com")).isNull();
+    }
+
+    @Test
+    void update_evictsById_andByOldAndNewEmail_thenBroadcasts() {
+        warm();
+        // под новым адресом мог лежать чужой, уже удалённый пользователь
+        byEmail().put("ivan.new@test.com", existing);
+
+        userService.updateUser(existing.id(), new UserUpdateRequest("Ivan", "ivan.new@test.com", 26), null);
+
+        assertThat(byId().get(existing.id())).isNull();
+        assertThat(byEmail().get("ivan@test.com")).isNull();
+        assertThat(byEmail().get("ivan.new@test.com")).isNull();
+        assertThat(userService.getUserById(existing.id()).email()).isEqualTo("ivan.new@test.com");
+        assertThat(userService.findByEmail("ivan@test.com")).isEmpty();
+
+        verify(kafkaTemplate).send(eq(TOPIC), eq(String.valueOf(existing.id())), anyString());
+    }
+
+    @Test
+    void delete_evictsByIdAndEmail() {
+        warm();
+
+        userService.deleteUser(existing.id());
+
+        assertThat(byId().get(existing.id())).isNull();
+        assertThat(byEmail().get("ivan@test.com")).isNull();
+        assertThatThrownBy(() -> userService.getUserById(existing.id())).isInstanceOf(UserNotFoundException.class);
+        assertThat(userService.findByEmail("ivan@test.com")).isEmpty();
+    }
+
+    @Test
+    void remoteEviction_fromBroadcast_evictsLocalEntries() throws Exception {
+        userService.updateUser(existing.id(), new UserUpdateRequest("Ivan", "ivan.new@test.com", 26), null);
+        var payload = ArgumentCaptor.forClass(String.class);
+        verify(kafkaTemplate).send(eq(TOPIC), eq(String.valueOf(existing.id())), payload.capture());
+
+        // другой инстанс успел закэшировать старые значения до своего эвикшна
+        byId().put(existing.id(), existing);
+        byEmail().put("ivan@test.com", existing);
+        byEmail().put("ivan.new@test.com", existing);
+
+        userCacheInvalidator.onRemoteEviction(payload.getValue());
+
+        assertThat(byId().get(existing.id())).isNull();
+        assertThat(byEmail().get("ivan@test.com")).isNull();
+        assertThat(byEmail().get("ivan.new@test.com")).isNull();
+    }
+
+    private void warm() {
+        userService.getUserById(existing.id());
+        userService.findByEmail("ivan@test.com");
+        assertThat(byId().get(existing.id())).isNotNull();
+        assertThat(byEmail().get("ivan@test.com")).isNotNull();
+    }
+
+    private Cache byId() {
+        return cacheManager.getCache(USERS_BY_ID);
+    }
+
+    private Cache byEmail() {
+        return cacheManager.getCache(USERS_BY_EMAIL);
+    }
+}
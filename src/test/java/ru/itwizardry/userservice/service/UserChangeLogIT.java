@@ -0,0 +1,111 @@
+package ru.itwizardry.userservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.itwizardry.userservice.BaseTest;
+import ru.itwizardry.userservice.dto.UserChangeDto;
+import ru.itwizardry.userservice.kafka.publisher.UserEventPublisher;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+@SpringBootTest
+class UserChangeLogIT extends BaseTest {
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void props(DynamicPropertyRegistry r) {
+        r.add("spring.datasource.url", postgres::getJdbcUrl);
+        r.add("spring.datasource.username", postgres::getUsername);
+        r.add("spring.datasource.password", postgres::getPassword);
+
+        r.add("spring.kafka.listener.auto-startup", () -> "false");
+        r.add("springdoc.swagger-ui.enabled", () -> "false");
+    }
+
+    @Autowired
+    UserChangeLog userChangeLog;
+    @Autowired
+    UserChangeService userChangeService;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM user_changes");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void writers_doNotWaitForEachOther_andFeedHoldsBackBehindRunningTransaction() throws Exception {
+        var written = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        // первая транзакция записала user_changes и висит перед коммитом
+        var slow = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            userChangeLog.deleted(1L);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    written.countDown();
+                    await(release);
+                }
+            });
+        }));
+        await(written);
+
+        // вторая коммитится, не дожидаясь первой
+        CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> userChangeLog.deleted(2L)))
+                .get(5, TimeUnit.SECONDS);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM user_changes", Long.class)).isEqualTo(1);
+
+        // изменение 2 закоммичено, но у 1 номер меньше и оно ещё не видно — курсор не должен уйти дальше
+        assertThat(userChangeService.findChanges(0, 100)).isEmpty();
+        assertThat(userChangeService.lastSeq()).isZero();
+
+        release.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+
+        assertThat(userChangeService.findChanges(0, 100))
+                .extracting(UserChangeDto::id)
+                .containsExactly(1L, 2L);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ru.itwizardry.userservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Настоящие миграции Liquibase, а не ddl-auto: 009 → UserPartitionMigrator → «рестарт» с 010-cutover
+@Testcontainers
+class UserPartitionMigrationIT {
+
+    private static final String ROWS = "SELECT id, name, email, age, created_at, version, deleted_at FROM %s ORDER BY id";
+
+    @Container
+    final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        jdbc = new JdbcTemplate(dataSource);
+        migrate();
+    }
+
+    @Test
+    void copy_mirrorsConcurrentWrites_resumesAfterRestart_andCutsOver() throws Exception {
+        // до переноса cutover пропущен: users — ещё старая таблица
+        assertThat(isPartitioned("users")).isFalse();
+        assertThat(jdbc.queryForObject(
+                "SELECT count(*) FROM databasechangelog WHERE id = '010-users-partitioned-cutover'", Long.class)).isZero();
+
+        long archived = insertUser("old@test.com", "now() - INTERVAL '2 years'");
+        long second = insertUser("second@test.com", "now()");
+        long third = insertUser("third@test.com", "now()");
+        long fourth = insertUser("fourth@test.com", "now()");
+
+        migrator(2).copyNextBatch();
+        assertThat(jdbc.queryForObject("SELECT last_id FROM users_partition_migration", Long.class)).isEqualTo(second);
+
+        // записи во время переноса: в уже скопированные строки, в ещё не скопированные и новые
+        jdbc.update("UPDATE users SET name = 'Renamed', version = version + 1 WHERE id = ?", archived);
+        jdbc.update("DELETE FROM users WHERE id = ?", second);
+        jdbc.update("UPDATE users SET age = 99 WHERE id = ?", fourth);
+        long inserted = insertUser("new@test.com", "now()");
+        assertThat(rows("users_partitioned")).extracting(row -> row.get("id")).containsExactly(archived, fourth, inserted);
+
+        // новый экземпляр — как после рестарта: продолжает с last_id из таблицы
+        UserPartitionMigrator resumed = migrator(2);
+        for (int i = 0; i < 10 && !isDone(); i++) {
+            resumed.copyNextBatch();
+        }
+        assertThat(isDone()).isTrue();
+        assertThat(rows("users_partitioned")).isEqualTo(rows("users"));
+        assertThat(rows("users_partitioned")).extracting(row -> row.get("id")).containsExactly(archived, third, fourth, inserted);
+
+        migrate();
+
+        assertThat(isPartitioned("users")).isTrue();
+        assertThat(rows("users")).isEqualTo(rows("users_legacy"));
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM pg_trigger WHERE tgname = 'trg_users_mirror'", Long.class))
+                .isZero();
+        assertThat(jdbc.queryForObject("SELECT pg_get_serial_sequence('users', 'id')", String.class))
+                .isEqualTo("public.users_id_seq");
+        // последовательность принадлежит новой таблице и переживает удаление старой
+        jdbc.execute("DROP TABLE users_legacy");
+        long next = insertUser("after-cutover@test.com", "now()");
+        assertThat(next).isGreaterThan(inserted);
+
+        // уникальность email на секционированной таблице держит user_emails
+        assertThatThrownBy(() -> insertUser("third@test.com", "now() - INTERVAL '2 years'"))
+                .isInstanceOf(DuplicateKeyException.class);
+        jdbc.update("UPDATE users SET email = 'moved@test.com' WHERE id = ?", third);
+        assertThat(insertUser("third@test.com", "now()")).isPositive();
+    }
+
+    @Test
+    void softDelete_freesEmail_onBothLayouts() throws Exception {
+        // старая таблица: частичный индекс ux_users_email_active, зеркало ведёт user_emails у новой
+        long first = insertUser("reuse@test.com", "now()");
+        jdbc.update("UPDATE users SET deleted_at = now() WHERE id = ?", first);
+        long second = insertUser("reuse@test.com", "now()");
+        assertThatThrownBy(() -> insertUser("reuse@test.com", "now()"))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        for (int i = 0; i < 10 && !isDone(); i++) {
+            migrator(100).copyNextBatch();
+        }
+        migrate();
+        assertThat(isPartitioned("users")).isTrue();
+
+        // секционированная: занятость адреса держит user_emails, удалённый его освобождает
+        assertThatThrownBy(() -> insertUser("reuse@test.com", "now()"))
+                .isInstanceOf(DuplicateKeyException.class);
+        jdbc.update("UPDATE users SET deleted_at = now() WHERE id = ?", second);
+        long third = insertUser("reuse@test.com", "now() - INTERVAL '2 years'");
+        assertThat(jdbc.queryForList("SELECT user_id FROM user_emails WHERE email = 'reuse@test.com'", Long.class))
+                .containsExactly(third);
+        // физическое удаление удалённой строки (UserPurger) живой адрес не трогает
+        jdbc.update("DELETE FROM users WHERE id IN (?, ?)", first, second);
+        assertThat(jdbc.queryForList("SELECT user_id FROM user_emails WHERE email = 'reuse@test.com'", Long.class))
+                .containsExactly(third);
+    }
+
+    @Test
+    void idLookup_isPrunedToOneHashPartitionPerRange() throws Exception {
+        long id = insertUser("pruned@test.com", "now()");
+        for (int i = 0; i < 10 && !isDone(); i++) {
+            migrator(100).copyNextBatch();
+        }
+        migrate();
+
+        String plan = String.join("\n", jdbc.queryForList("EXPLAIN SELECT * FROM users WHERE id = " + id, String.class));
+
+        // id не говорит, в какой части по created_at строка, но внутри каждой остаётся одна hash-партиция из 8
+        assertThat(scannedPartitions(plan)).as(plan).hasSize(2).anyMatch(p -> p.startsWith("users_archive_"))
+                .anyMatch(p -> p.startsWith("users_hot_"));
+        assertThat(jdbc.queryForObject("SELECT email FROM users WHERE id = ?", String.class, id))
+                .isEqualTo("pruned@test.com");
+    }
+
+    private void migrate() throws Exception {
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+
+    private UserPartitionMigrator migrator(int batchSize) {
+        return new UserPartitionMigrator(jdbc, new DataSourceTransactionManager(dataSource),
+                new SimpleMeterRegistry(), batchSize);
+    }
+
+    private long insertUser(String email, String createdAt) {
+        return jdbc.queryForObject("INSERT INTO users (name, email, age, created_at) VALUES ('User', ?, 30, "
+                + createdAt + ") RETURNING id", Long.class, email);
+    }
+
+    private List<Map<String, Object>> rows(String table) {
+        return jdbc.queryForList(ROWS.formatted(table));
+    }
+
+    private boolean isDone() {
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT done FROM users_partition_migration", Boolean.class));
+    }
+
+    private boolean isPartitioned(String table) {
+        return jdbc.queryForObject(
+                "SELECT count(*) FROM pg_partitioned_table WHERE partrelid = ?::regclass", Long.class, table) == 1;
+    }
+
+    private static List<String> scannedPartitions(String plan) {
+        Matcher matcher = Pattern.compile("\\bon (users_(?:archive|hot)_\\d)\\b").matcher(plan);
+        return matcher.results().map(result -> result.group(1)).distinct().toList();
+    }
+}
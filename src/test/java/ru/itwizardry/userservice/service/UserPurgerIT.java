@@ -0,0 +1,97 @@
+package ru.itwizardry.userservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.itwizardry.userservice.BaseTest;
+import ru.itwizardry.userservice.dto.UserCreateRequest;
+import ru.itwizardry.userservice.exception.EmailAlreadyExistsException;
+import ru.itwizardry.userservice.kafka.publisher.UserEventPublisher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Testcontainers
+@SpringBootTest
+class UserPurgerIT extends BaseTest {
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void props(DynamicPropertyRegistry r) {
+        r.add("spring.datasource.url", postgres::getJdbcUrl);
+        r.add("spring.datasource.username", postgres::getUsername);
+        r.add("spring.datasource.password", postgres::getPassword);
+        // уникальность email среди неудалённых — из схемы Liquibase
+        r.add("spring.liquibase.enabled", () -> "true");
+        r.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+
+        // очистка по расписанию, удалённые годятся к удалению сразу
+        r.add("app.purge.enabled", () -> "true");
+        r.add("app.purge.rate-ms", () -> "50");
+        r.add("app.purge.retention", () -> "PT0S");
+
+        r.add("spring.kafka.listener.auto-startup", () -> "false");
+        r.add("springdoc.swagger-ui.enabled", () -> "false");
+    }
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void cleanDb() {
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void deletedUser_freesEmail_andIsPurgedBySchedule() throws InterruptedException {
+        var request = new UserCreateRequest("Ivan", "purge@test.com", 25);
+        long first = userService.createUser(request).id();
+        double purgedBefore = purgedCount();
+
+        assertThatThrownBy(() -> userService.createUser(request))
+                .isInstanceOf(EmailAlreadyExistsException.class);
+
+        userService.deleteUser(first);
+        long second = userService.createUser(request).id();
+        assertThat(second).isNotEqualTo(first);
+
+        // строку первого пользователя физически удаляет UserPurger, живой второй остаётся
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (rowExists(first) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(rowExists(first)).isFalse();
+        assertThat(rowExists(second)).isTrue();
+        assertThat(purgedCount()).isGreaterThanOrEqualTo(purgedBefore + 1);
+    }
+
+    private boolean rowExists(long id) {
+        Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM users WHERE id = ?", Long.class, id);
+        return count != null && count > 0;
+    }
+
+    private double purgedCount() {
+        return meterRegistry.get("users.purged").counter().count();
+    }
+}
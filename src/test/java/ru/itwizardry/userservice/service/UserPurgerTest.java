@@ -0,0 +1,85 @@
+package ru.itwizardry.userservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.itwizardry.userservice.config.DbPoolPressure;
+import ru.itwizardry.userservice.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class UserPurgerTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final DbPoolPressure pressure = mock(DbPoolPressure.class);
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<DbPoolPressure> pressureProvider = mock(ObjectProvider.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private UserPurger purger;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(pressureProvider.getIfAvailable()).thenReturn(pressure);
+        purger = new UserPurger(userRepository, transactionManager, pressureProvider, meterRegistry,
+                100, Duration.ofMinutes(30));
+    }
+
+    @Test
+    void overloadedPool_skipsTick() {
+        when(pressure.isOverloaded()).thenReturn(true);
+
+        purger.purgeBatch();
+
+        verify(userRepository, never()).purgeDeleted(any(), anyInt());
+        verifyNoInteractions(transactionManager);
+        assertThat(purgedCount()).isZero();
+    }
+
+    @Test
+    void purgesOneBatchOlderThanRetention_inTransaction() {
+        when(userRepository.purgeDeleted(any(), anyInt())).thenReturn(7);
+
+        purger.purgeBatch();
+
+        var before = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(userRepository).purgeDeleted(before.capture(), eq(100));
+        assertThat(before.getValue())
+                .isCloseTo(LocalDateTime.now().minusMinutes(30), within(5, ChronoUnit.SECONDS));
+        verify(transactionManager).commit(any());
+        assertThat(purgedCount()).isEqualTo(7);
+    }
+
+    @Test
+    void withoutPressureMonitor_purgesAnyway() {
+        when(pressureProvider.getIfAvailable()).thenReturn(null);
+
+        purger.purgeBatch();
+
+        verify(userRepository).purgeDeleted(any(), eq(100));
+        assertThat(purgedCount()).isZero();
+    }
+
+    private double purgedCount() {
+        return meterRegistry.get("users.purged").counter().count();
+    }
+}
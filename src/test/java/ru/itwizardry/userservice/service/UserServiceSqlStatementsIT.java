@@ -0,0 +1,151 @@
+package ru.itwizardry.userservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.itwizardry.userservice.BaseTest;
+import ru.itwizardry.userservice.dto.UserCreateRequest;
+import ru.itwizardry.userservice.dto.UserDto;
+import ru.itwizardry.userservice.dto.UserUpdateRequest;
+import ru.itwizardry.userservice.exception.UserNotFoundException;
+import ru.itwizardry.userservice.kafka.publisher.UserEventPublisher;
+import ru.itwizardry.userservice.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verify;
+
+// Горячие пути: число SQL statement на операцию — часть контракта, регрессии ловим здесь.
+@Testcontainers
+@SpringBootTest
+@Import(SqlStatementCounter.class)
+class UserServiceSqlStatementsIT extends BaseTest {
+
+    @MockitoBean
+    private UserEventPublisher userEventPublisher;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void props(DynamicPropertyRegistry r) {
+        r.add("spring.datasource.url", postgres::getJdbcUrl);
+        r.add("spring.datasource.username", postgres::getUsername);
+        r.add("spring.datasource.password", postgres::getPassword);
+
+        r.add("spring.kafka.listener.auto-startup", () -> "false");
+        r.add("springdoc.swagger-ui.enabled", () -> "false");
+    }
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CacheManager cacheManager;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private UserDto existing;
+
+    @BeforeEach
+    void setUp() {
+        // deleteAll() не видит помеченных deleted_at — чистим таблицу целиком
+        jdbcTemplate.update("DELETE FROM users");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // первый insert заодно прогревает pooled-последовательность, дальше nextval не ходит в БД
+        existing = userService.createUser(new UserCreateRequest("Ivan", "ivan@test.com", 25));
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        SqlStatementCounter.reset();
+    }
+
+    @Test
+    void create_isSingleInsert() {
+        userService.createUser(new UserCreateRequest("Petr", "petr@test.com", 30));
+
+        assertStatements("insert into users", "insert into user_changes");
+    }
+
+    @Test
+    void update_isSelectThenUpdate() {
+        userService.updateUser(existing.id(), new UserUpdateRequest("Ivan Ivanov", "ivan@test.com", 26), null);
+
+        assertStatements("select", "update users", "insert into user_changes");
+    }
+
+    @Test
+    void get_isSingleSelect() {
+        userService.getUserById(existing.id());
+
+        assertStatements("select");
+    }
+
+    @Test
+    void delete_isSingleSoftDeleteReturning() {
+        userService.deleteUser(existing.id());
+
+        assertStatements("update users", "insert into user_changes");
+        assertThat(SqlStatementCounter.statements().getFirst()).containsIgnoringCase("returning email");
+        verify(userEventPublisher).publishUserDeleted(existing.id(), "ivan@test.com");
+        assertThat(userRepository.existsById(existing.id())).isFalse();
+    }
+
+    @Test
+    void delete_twice_throwsNotFound() {
+        userService.deleteUser(existing.id());
+
+        assertThatThrownBy(() -> userService.deleteUser(existing.id()))
+                .isInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    void delete_missing_throwsNotFound() {
+        assertThatThrownBy(() -> userService.deleteUser(existing.id() + 1000))
+                .isInstanceOf(UserNotFoundException.class);
+
+        assertStatements("update users");
+    }
+
+    @Test
+    void purge_removesSoftDeletedRows() {
+        userService.deleteUser(existing.id());
+
+        int purged = transactionTemplate.execute(status ->
+                userRepository.purgeDeleted(LocalDateTime.now().plusMinutes(1), 100));
+
+        assertThat(purged).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM users", Long.class)).isZero();
+    }
+
+    private static void assertStatements(String... kinds) {
+        List<String> statements = SqlStatementCounter.statements();
+        assertThat(statements)
+                .as("SQL statements: %s", statements)
+                .hasSize(kinds.length);
+        for (int i = 0; i < kinds.length; i++) {
+            assertThat(statements.get(i).stripLeading()).as(statements.get(i)).startsWithIgnoringCase(kinds[i]);
+        }
+    }
+}